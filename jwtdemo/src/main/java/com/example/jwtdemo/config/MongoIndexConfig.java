@@ -0,0 +1,88 @@
+package com.example.jwtdemo.config;
+
+import com.example.jwtdemo.model.JwtKey;
+import com.example.jwtdemo.model.Project;
+import com.example.jwtdemo.model.UserActivity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Creates the indexes that query paths rely on. Automatic index creation from
+ * mapping annotations is off by default, so they are ensured explicitly once the
+ * application has started. Ensuring an existing index is a no-op. Each index
+ * is ensured on its own, so one that fails, e.g. a text index conflicting with
+ * an existing one, does not keep the others from being created.
+ */
+@Configuration
+public class MongoIndexConfig {
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexConfig.class);
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        Flux.merge(
+                // Keyset pagination of the project listing, newest first
+                ensureIndex(Project.class, new Index()
+                    .on("createdAt", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC)
+                    .named("createdAt_id")),
+                // Project search, see ProjectQueryBuilder
+                ensureIndex(Project.class, TextIndexDefinition.builder()
+                    .onField("name", 3F)
+                    .onField("technologies", 2F)
+                    .onField("description")
+                    .named("project_text")
+                    .build()),
+                // Technology filters match normalized keys, see Project.technologyKey
+                ensureIndex(Project.class, new Index()
+                    .on("technologyKeys", Sort.Direction.ASC)
+                    .named("technologyKeys")),
+                ensureIndex(Project.class, new Index()
+                    .on("status", Sort.Direction.ASC)
+                    .on("visibility", Sort.Direction.ASC)
+                    .on("createdAt", Sort.Direction.DESC)
+                    .named("status_visibility_createdAt")),
+                // Activity lookups by action, newest first, see UserActivityRepository
+                ensureIndex(UserActivity.class, new Index()
+                    .on("userId", Sort.Direction.ASC)
+                    .on("action", Sort.Direction.ASC)
+                    .on("timestamp", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC)
+                    .named("userId_action_timestamp")),
+                ensureIndex(UserActivity.class, new Index()
+                    .on("projectId", Sort.Direction.ASC)
+                    .on("action", Sort.Direction.ASC)
+                    .on("timestamp", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC)
+                    .named("projectId_action_timestamp")),
+                // Token signing keys are dropped once no token they signed can be valid
+                ensureIndex(JwtKey.class, new Index()
+                    .on("expiresAt", Sort.Direction.ASC)
+                    .expire(0)
+                    .named("expiresAt_ttl"))
+            )
+            .subscribe(name -> logger.info("Ensured index {}", name));
+    }
+
+    private Mono<String> ensureIndex(Class<?> entityClass, IndexDefinition index) {
+        return mongoTemplate.indexOps(entityClass).ensureIndex(index)
+            .onErrorResume(ex -> {
+                logger.error("Failed to ensure index {} on {}: {}",
+                    index.getIndexOptions().get("name"), entityClass.getSimpleName(), ex.getMessage(), ex);
+                return Mono.empty();
+            });
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.jwtdemo.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rate limits per action, e.g. rate-limit.actions.password_reset.limit=5 and
+ * rate-limit.actions.password_reset.window=1h. Actions without an entry use
+ * the default limit. Request rate limits for all HTTP traffic are under
+ * rate-limit.http. Values are checked at startup.
+ */
+@Data
+@Component
+@Validated
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+    @Valid
+    private Limit defaults = new Limit();
+    private Map<String, @Valid Limit> actions = new HashMap<>();
+    @Valid
+    private Http http = new Http();
+
+    public Limit forAction(String action) {
+        return actions.getOrDefault(action, defaults);
+    }
+
+    @Data
+    public static class Limit {
+        // Attempts allowed within any window of the given length
+        @Positive
+        private int limit = 5;
+        @NotNull
+        private Duration window = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Http {
+        private boolean enabled = true;
+        // Take the client address from the first X-Forwarded-For hop, only behind a trusted proxy
+        private boolean trustForwardedFor = false;
+        @Valid
+        private Bucket perIp = new Bucket(20, 40);
+        @Valid
+        private Bucket perUser = new Bucket(20, 40);
+        // Tighter buckets for expensive routes, kept per client and route
+        private List<@Valid Route> routes = new ArrayList<>();
+        // How often local bucket usage is reconciled with the other instances
+        private Duration syncInterval = Duration.ofSeconds(2);
+        private Duration idleTimeout = Duration.ofMinutes(5);
+        private long maxBuckets = 100_000;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+        // Bounded so the refill interval times the capacity fits in a long of nanoseconds
+        @DecimalMin("0.001")
+        @DecimalMax("1000000000")
+        private double ratePerSecond;
+        @Positive
+        @Max(1_000_000)
+        private int capacity;
+    }
+
+    @Data
+    public static class Route {
+        private String method;
+        private String pattern;
+        @NotNull
+        @Valid
+        private Bucket bucket;
+    }
+}
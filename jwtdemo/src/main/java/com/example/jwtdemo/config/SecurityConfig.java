@@ -2,14 +2,21 @@ package com.example.jwtdemo.config;
 
 import com.example.jwtdemo.filter.JwtAuthenticationFilter;
 import com.example.jwtdemo.service.CustomUserDetailsService;
+import com.example.jwtdemo.util.PasswordEncoderCalibrator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
@@ -17,10 +24,19 @@ import org.springframework.web.cors.reactive.CorsConfigurationSource;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
+import java.util.Map;
 
 @Configuration
 @EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
 public class SecurityConfig {
+    private static final Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
+
+    private static final String BCRYPT = "bcrypt";
+    private static final String ARGON2 = "argon2";
+    // Floors for calibrated work factors, the previous BCrypt default and the OWASP argon2id minimum
+    private static final int MIN_BCRYPT_STRENGTH = 10;
+    private static final int MIN_ARGON2_ITERATIONS = 2;
 
     @Bean
     SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, JwtAuthenticationFilter jwtFilter) {
@@ -28,7 +44,7 @@ public class SecurityConfig {
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .authorizeExchange(exchanges -> exchanges
-                    .pathMatchers("/api/auth/**", "/actuator/**").permitAll()
+                    .pathMatchers("/api/auth/**", "/actuator/**", "/.well-known/**").permitAll()
                     .anyExchange().authenticated()
                 )
                 .addFilterAt(jwtFilter, SecurityWebFiltersOrder.AUTHENTICATION)
@@ -46,9 +62,44 @@ public class SecurityConfig {
         return authenticationManager;
     }
 
+    /**
+     * Encodes new passwords with the configured algorithm, at a work factor
+     * calibrated at startup to the target time unless one is pinned, and
+     * matches hashes of any supported algorithm. Hashes stored without an
+     * {id} prefix predate this encoder and are BCrypt.
+     */
     @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    PasswordEncoder passwordEncoder(
+            @Value("${security.password-hashing.algorithm:bcrypt}") String algorithm,
+            @Value("${security.password-hashing.target-millis:100}") long targetMillis,
+            @Value("${security.password-hashing.bcrypt.strength:0}") int bcryptStrength,
+            @Value("${security.password-hashing.argon2.memory-kib:19456}") int argon2MemoryKib,
+            @Value("${security.password-hashing.argon2.iterations:0}") int argon2Iterations) {
+        boolean argon2 = ARGON2.equalsIgnoreCase(algorithm);
+        if (!argon2 && !BCRYPT.equalsIgnoreCase(algorithm)) {
+            throw new IllegalArgumentException("Unsupported password hashing algorithm: " + algorithm);
+        }
+        BCryptPasswordEncoder bcrypt;
+        Argon2PasswordEncoder argon2Encoder;
+        if (argon2) {
+            int iterations = argon2Iterations > 0
+                ? argon2Iterations
+                : PasswordEncoderCalibrator.argon2Iterations(argon2MemoryKib, targetMillis, MIN_ARGON2_ITERATIONS);
+            logger.info("Hashing passwords with argon2id, memory {} KiB, {} iterations", argon2MemoryKib, iterations);
+            bcrypt = new BCryptPasswordEncoder();
+            argon2Encoder = new Argon2PasswordEncoder(16, 32, 1, argon2MemoryKib, iterations);
+        } else {
+            int strength = bcryptStrength > 0
+                ? bcryptStrength
+                : PasswordEncoderCalibrator.bcryptStrength(targetMillis, MIN_BCRYPT_STRENGTH);
+            logger.info("Hashing passwords with bcrypt, strength {}", strength);
+            bcrypt = new BCryptPasswordEncoder(strength);
+            argon2Encoder = Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8();
+        }
+        Map<String, PasswordEncoder> encoders = Map.of(BCRYPT, bcrypt, ARGON2, argon2Encoder);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(argon2 ? ARGON2 : BCRYPT, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
     }
 
     @Bean
@@ -57,6 +108,7 @@ public class SecurityConfig {
         config.setAllowedOrigins(Arrays.asList("http://localhost:5173"));
         config.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         config.setAllowedHeaders(Arrays.asList("*"));
+        config.setExposedHeaders(Arrays.asList("X-Next-Cursor", "Retry-After", "X-RateLimit-Limit", "X-RateLimit-Remaining"));
         config.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -1,8 +1,13 @@
 package com.example.jwtdemo.config;
 
 import java.util.Arrays;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.multipart.DefaultPartHttpMessageReader;
+import org.springframework.http.codec.multipart.MultipartHttpMessageReader;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsWebFilter;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
@@ -13,6 +18,25 @@ import org.springframework.web.reactive.config.WebFluxConfigurer;
 @EnableWebFlux
 public class WebConfig implements WebFluxConfigurer {
 
+    @Value("${spring.codec.max-in-memory-size:256KB}")
+    private DataSize maxInMemorySize;
+
+    /*
+     * @EnableWebFlux turns off Boot's codec auto-configuration, so the
+     * spring.codec limit is applied here. The multipart reader keeps a file
+     * part in heap only up to the limit and spools larger parts to a temp
+     * file, so heap use per upload stays bounded whatever the file size.
+     */
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        int limit = (int) maxInMemorySize.toBytes();
+        configurer.defaultCodecs().maxInMemorySize(limit);
+
+        DefaultPartHttpMessageReader partReader = new DefaultPartHttpMessageReader();
+        partReader.setMaxInMemorySize(limit);
+        configurer.defaultCodecs().multipartReader(new MultipartHttpMessageReader(partReader));
+    }
+
 @Bean
 CorsWebFilter corsWebFilter() {
     CorsConfiguration config = new CorsConfiguration();
@@ -29,7 +53,8 @@ CorsWebFilter corsWebFilter() {
             "Accept",
             "Access-Control-Allow-Origin",
             "Access-Control-Allow-Headers",
-            "Origin"
+            "Origin",
+            "X-Chunk-SHA256"
         ));
         
         // Allow credentials and expose headers
@@ -37,7 +62,11 @@ CorsWebFilter corsWebFilter() {
         config.setExposedHeaders(Arrays.asList(
             "Authorization",
             "Access-Control-Allow-Origin",
-            "Access-Control-Allow-Credentials"
+            "Access-Control-Allow-Credentials",
+            "X-Next-Cursor",
+            "Retry-After",
+            "X-RateLimit-Limit",
+            "X-RateLimit-Remaining"
         ));
         
         config.setMaxAge(3600L);
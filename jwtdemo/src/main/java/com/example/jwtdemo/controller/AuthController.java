@@ -2,6 +2,8 @@ package com.example.jwtdemo.controller;
 
 import com.example.jwtdemo.dto.ApiResponse;
 import com.example.jwtdemo.dto.PasswordResetRequest;
+import com.example.jwtdemo.exception.ApiException;
+import com.example.jwtdemo.exception.RateLimitExceededException;
 import com.example.jwtdemo.model.LoginRequest;
 import com.example.jwtdemo.model.LoginResponse;
 import com.example.jwtdemo.model.User;
@@ -40,7 +42,7 @@ public class AuthController {
                 .onErrorResume(ex -> {
                     logger.error("Login failed", ex);
                     return Mono.just(ResponseEntity
-                        .status(HttpStatus.UNAUTHORIZED)
+                        .status(errorStatus(ex, HttpStatus.UNAUTHORIZED))
                         .body(ApiResponse.<LoginResponse>error("Authentication failed: " + ex.getMessage())));
                 });
     }
@@ -65,7 +67,7 @@ public class AuthController {
                     .onErrorResume(ex -> {
                         logger.error("Developer registration failed", ex);
                         return Mono.just(ResponseEntity
-                            .status(HttpStatus.BAD_REQUEST)
+                            .status(errorStatus(ex, HttpStatus.BAD_REQUEST))
                             .body(ApiResponse.<LoginResponse>error("Registration failed: " + ex.getMessage())));
                     });
             case BUYER:
@@ -74,7 +76,7 @@ public class AuthController {
                     .onErrorResume(ex -> {
                         logger.error("Buyer registration failed", ex);
                         return Mono.just(ResponseEntity
-                            .status(HttpStatus.BAD_REQUEST)
+                            .status(errorStatus(ex, HttpStatus.BAD_REQUEST))
                             .body(ApiResponse.<LoginResponse>error("Registration failed: " + ex.getMessage())));
                     });
             default:
@@ -93,7 +95,7 @@ public class AuthController {
                 .onErrorResume(ex -> {
                     logger.error("Developer registration failed", ex);
                     return Mono.just(ResponseEntity
-                        .status(HttpStatus.BAD_REQUEST)
+                        .status(errorStatus(ex, HttpStatus.BAD_REQUEST))
                         .body(ApiResponse.<LoginResponse>error("Registration failed: " + ex.getMessage())));
                 });
     }
@@ -107,7 +109,7 @@ public class AuthController {
                 .onErrorResume(ex -> {
                     logger.error("Buyer registration failed", ex);
                     return Mono.just(ResponseEntity
-                        .status(HttpStatus.BAD_REQUEST)
+                        .status(errorStatus(ex, HttpStatus.BAD_REQUEST))
                         .body(ApiResponse.<LoginResponse>error("Registration failed: " + ex.getMessage())));
                 });
     }
@@ -124,7 +126,7 @@ public class AuthController {
                 .onErrorResume(ex -> {
                     logger.error("Token refresh failed", ex);
                     return Mono.just(ResponseEntity
-                        .status(HttpStatus.UNAUTHORIZED)
+                        .status(errorStatus(ex, HttpStatus.UNAUTHORIZED))
                         .body(ApiResponse.<LoginResponse>error("Token refresh failed: " + ex.getMessage())));
                 });
     }
@@ -158,6 +160,9 @@ public class AuthController {
                 )))
                 .onErrorResume(ex -> {
                     logger.error("Password reset initiation failed", ex);
+                    if (ex instanceof RateLimitExceededException rateLimited) {
+                        return Mono.just(tooManyRequests(rateLimited));
+                    }
                     return Mono.just(ResponseEntity
                         .status(HttpStatus.BAD_REQUEST)
                         .body(ApiResponse.<Void>error("Password reset failed: " + ex.getMessage())));
@@ -174,8 +179,11 @@ public class AuthController {
                 )))
                 .onErrorResume(ex -> {
                     logger.error("Password reset failed", ex);
+                    if (ex instanceof RateLimitExceededException rateLimited) {
+                        return Mono.just(tooManyRequests(rateLimited));
+                    }
                     return Mono.just(ResponseEntity
-                        .status(HttpStatus.BAD_REQUEST)
+                        .status(errorStatus(ex, HttpStatus.BAD_REQUEST))
                         .body(ApiResponse.<Void>error("Password reset failed: " + ex.getMessage())));
                 });
     }
@@ -192,8 +200,22 @@ public class AuthController {
                 .onErrorResume(ex -> {
                     logger.error("Token verification failed", ex);
                     return Mono.just(ResponseEntity
-                        .status(HttpStatus.BAD_REQUEST)
+                        .status(errorStatus(ex, HttpStatus.BAD_REQUEST))
                         .body(ApiResponse.<Boolean>error("Token verification failed: " + ex.getMessage())));
                 });
     }
+
+    private static <T> ResponseEntity<ApiResponse<T>> tooManyRequests(RateLimitExceededException ex) {
+        return ResponseEntity
+            .status(HttpStatus.TOO_MANY_REQUESTS)
+            .headers(ex.toHeaders())
+            .body(ApiResponse.<T>error(ex.getMessage()));
+    }
+
+    // Hashing shed under load and an unreachable token store are reported as 503 so clients retry
+    private static HttpStatus errorStatus(Throwable ex, HttpStatus fallback) {
+        return ex instanceof ApiException apiException && apiException.getStatus() == HttpStatus.SERVICE_UNAVAILABLE
+            ? HttpStatus.SERVICE_UNAVAILABLE
+            : fallback;
+    }
 }
@@ -0,0 +1,43 @@
+package com.example.jwtdemo.controller;
+
+import com.example.jwtdemo.service.JwtKeyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+public class JwksController {
+    private static final Logger logger = LoggerFactory.getLogger(JwksController.class);
+
+    // Verifiers refetch sooner when they meet a kid they do not know
+    private static final Duration JWKS_MAX_AGE = Duration.ofMinutes(5);
+
+    @Autowired
+    private JwtKeyService jwtKeyService;
+
+    /**
+     * Public keys that verify tokens issued by this service, as a JWK Set
+     * (RFC 7517). Served bare rather than in an ApiResponse so standard JWT
+     * libraries can consume it.
+     */
+    @GetMapping("/.well-known/jwks.json")
+    public Mono<ResponseEntity<Map<String, Object>>> getJwks() {
+        return jwtKeyService.jwks()
+                .map(jwks -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.maxAge(JWKS_MAX_AGE).cachePublic())
+                        .body(jwks))
+                .onErrorResume(ex -> {
+                    logger.error("Error loading token verification keys", ex);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).<Map<String, Object>>build());
+                });
+    }
+}
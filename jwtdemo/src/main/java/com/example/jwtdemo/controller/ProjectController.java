@@ -7,6 +7,13 @@ import com.example.jwtdemo.dto.ApiResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -18,18 +25,36 @@ import reactor.core.publisher.Mono;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.security.core.Authentication;
+import org.springframework.web.server.ServerWebExchange;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 import java.util.Map;
 import java.util.HashMap;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import com.example.jwtdemo.dto.ProjectDetailsDto;
+import com.example.jwtdemo.dto.ProjectSearchResult;
+import com.example.jwtdemo.exception.ApiException;
 import com.example.jwtdemo.service.UserService;
+import com.example.jwtdemo.service.ProjectFileStorageService;
+import com.example.jwtdemo.service.ProjectArchiveService;
+import com.example.jwtdemo.service.ProjectSearchIndex;
+import com.example.jwtdemo.util.ETagUtil;
+import com.example.jwtdemo.util.SuggestionTrie;
 
 @RestController
 @RequestMapping("/api/projects")
 public class ProjectController {
     private static final Logger logger = LoggerFactory.getLogger(ProjectController.class);
+    private static final long MAX_README_SIZE = 262144; // 256KB
+    private static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int DEFAULT_LIST_PAGE_SIZE = 50;
+    private static final int MAX_LIST_PAGE_SIZE = 200;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     @Autowired
     private ProjectService projectService;
@@ -37,6 +62,15 @@ public class ProjectController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ProjectFileStorageService fileStorageService;
+
+    @Autowired
+    private ProjectArchiveService projectArchiveService;
+
+    @Autowired
+    private ProjectSearchIndex searchIndex;
+
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @PreAuthorize("hasRole('DEVELOPER')")
     public Mono<ResponseEntity<ApiResponse<Project>>> createProject(
@@ -66,38 +100,18 @@ public class ProjectController {
         if (files != null) {
             logger.info("Processing files for project: {}", name);
             return files
-                .flatMap(filePart -> {
+                .concatMap(filePart -> {
                     logger.info("Processing file: {} of type: {}", 
                         filePart.filename(), 
                         filePart.headers().getContentType());
-                    
-                    return filePart.content()
-                        .reduce(new byte[0], (acc, dataBuffer) -> {
-                            byte[] data = new byte[dataBuffer.readableByteCount()];
-                            dataBuffer.read(data);
-                            byte[] result = new byte[acc.length + data.length];
-                            System.arraycopy(acc, 0, result, 0, acc.length);
-                            System.arraycopy(data, 0, result, acc.length, data.length);
-                            return result;
-                        })
-                        .map(bytes -> {
-                            Project.ProjectFile projectFile = new Project.ProjectFile();
-                            projectFile.setFilename(filePart.filename());
-                            projectFile.setContentType(Optional.ofNullable(filePart.headers().getContentType())
-                                .map(Object::toString)
-                                .orElse("application/octet-stream"));
-                            projectFile.setData(bytes);
-                            projectFile.setSize(bytes.length);
-                            logger.info("File processed: {} (size: {} bytes)", 
-                                filePart.filename(), bytes.length);
-                            return projectFile;
-                        });
+                    return fileStorageService.store(filePart);
                 })
                 .collectList()
                 .flatMap(projectFiles -> {
                     project.setFiles(projectFiles);
                     logger.info("Saving project {} with {} files", name, projectFiles.size());
-                    return projectService.createProject(project);
+                    return projectService.createProject(project)
+                        .onErrorResume(ex -> fileStorageService.releaseAll(projectFiles).then(Mono.error(ex)));
                 })
                 .map(createdProject -> {
                     logger.info("Project created successfully: {}", createdProject.getId());
@@ -134,10 +148,11 @@ public class ProjectController {
     @PreAuthorize("hasRole('DEVELOPER')")
     public Mono<ResponseEntity<ApiResponse<Project>>> updateProject(
             @PathVariable @NotBlank(message = "Project ID cannot be blank") String id, 
-            @Valid @RequestBody Project project) {
-        logger.info("Updating project: {}", id);
+            @Valid @RequestBody Project project,
+            Authentication authentication) {
+        logger.info("Updating project: {} for user: {}", id, authentication.getName());
         logger.info("Incoming project object: {}", project); // Log the incoming project object
-        return projectService.updateProject(id, project)
+        return projectService.updateProject(id, project, authentication.getName())
                 .map(updatedProject -> ResponseEntity.ok(
                     ApiResponse.success(updatedProject, "Project updated successfully")
                 ))
@@ -149,14 +164,49 @@ public class ProjectController {
                 });
     }
 
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('DEVELOPER')")
+    public Mono<ResponseEntity<ApiResponse<Void>>> deleteProject(
+            @PathVariable @NotBlank(message = "Project ID cannot be blank") String id,
+            Authentication authentication) {
+        logger.info("Deleting project: {} for user: {}", id, authentication.getName());
+        return projectService.deleteProject(id, authentication.getName())
+                .then(Mono.just(ResponseEntity.ok(
+                    ApiResponse.<Void>success(null, "Project deleted successfully")
+                )))
+                .onErrorResume(ex -> {
+                    logger.error("Failed to delete project", ex);
+                    return Mono.just(ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(ApiResponse.<Void>error("Project deletion failed: " + ex.getMessage())));
+                });
+    }
+
+    // One page of projects, newest first; the X-Next-Cursor header points at the next page
     @GetMapping
-    public Mono<ResponseEntity<ApiResponse<List<Project>>>> getAllProjects() {
-        logger.info("Retrieving all projects");
-        return projectService.getAllProjects()
+    public Mono<ResponseEntity<ApiResponse<List<Project>>>> getAllProjects(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_LIST_PAGE_SIZE) int limit) {
+        logger.info("Retrieving projects after cursor: {}, limit: {}", cursor, limit);
+        if (limit < 1 || limit > MAX_LIST_PAGE_SIZE) {
+            return Mono.just(ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.<List<Project>>error("Limit must be between 1 and " + MAX_LIST_PAGE_SIZE)));
+        }
+        // One extra project tells whether there is a next page
+        return projectService.getProjects(cursor, PageRequest.of(0, limit + 1))
             .collectList()
-            .map(projects -> ResponseEntity.ok(
-                ApiResponse.success(projects, "Projects retrieved successfully")
-            ))
+            .map(projects -> {
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (projects.size() > limit) {
+                    projects = projects.subList(0, limit);
+                    response.header(NEXT_CURSOR_HEADER, ProjectService.cursorOf(projects.get(limit - 1)));
+                }
+                return response.body(ApiResponse.success(projects, "Projects retrieved successfully"));
+            })
+            .onErrorResume(IllegalArgumentException.class, ex -> Mono.just(ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.<List<Project>>error(ex.getMessage()))))
             .onErrorResume(ex -> {
                 logger.error("Failed to retrieve projects", ex);
                 return Mono.just(ResponseEntity
@@ -165,6 +215,14 @@ public class ProjectController {
             });
     }
 
+    // Streams projects newest first as newline-delimited JSON while they are read from Mongo
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Project> streamProjects(@RequestParam(required = false) String cursor) {
+        logger.info("Streaming projects after cursor: {}", cursor);
+        return projectService.getProjects(cursor, Pageable.unpaged())
+            .doOnError(ex -> logger.error("Failed to stream projects: {}", ex.getMessage()));
+    }
+
     @GetMapping("/developer/{email}")
     @PreAuthorize("hasRole('DEVELOPER')")
     public Mono<ResponseEntity<ApiResponse<List<Project>>>> getDeveloperProjectsByEmail(
@@ -197,21 +255,55 @@ public class ProjectController {
     }
 
     @GetMapping("/search")
-    public Mono<ResponseEntity<ApiResponse<Flux<Project>>>> searchProjects(
+    public Mono<ResponseEntity<ApiResponse<ProjectSearchResult>>> searchProjects(
+            @RequestParam(required = false) String q,
             @RequestParam(required = false) String[] technologies,
-            @RequestParam(required = false) String status) {
-        logger.info("Searching projects with technologies: {}, status: {}", technologies, status);
-        return Mono.just(ResponseEntity.ok(
-            ApiResponse.success(
-                projectService.searchProjects(technologies, status), 
-                "Projects searched successfully"
-            )
-        )).onErrorResume(ex -> {
-            logger.error("Failed to search projects", ex);
+            @RequestParam(defaultValue = "any") String match,
+            @RequestParam(required = false) ProjectStatus status,
+            @RequestParam(required = false) String visibility,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime createdTo,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "" + DEFAULT_SEARCH_PAGE_SIZE) int size) {
+        logger.info("Searching projects with keyword: {}, technologies: {}, status: {}, page: {}", q, technologies, status, page);
+        if (!match.equals("any") && !match.equals("all")) {
+            return Mono.just(ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.<ProjectSearchResult>error("Match must be either 'any' or 'all'")));
+        }
+        if (page < 0 || size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
             return Mono.just(ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
-                .body(ApiResponse.error("Project search failed: " + ex.getMessage())));
-        });
+                .body(ApiResponse.<ProjectSearchResult>error(
+                    "Page must be at least 0 and size between 1 and " + MAX_SEARCH_PAGE_SIZE)));
+        }
+        return projectService.searchProjects(q, technologies, match.equals("all"), status, visibility,
+                createdFrom, createdTo, page, size)
+            .map(result -> ResponseEntity.ok(
+                ApiResponse.success(result, "Projects searched successfully")
+            ))
+            .onErrorResume(ex -> {
+                logger.error("Failed to search projects", ex);
+                return Mono.just(ResponseEntity
+                    .status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.<ProjectSearchResult>error("Project search failed: " + ex.getMessage())));
+            });
+    }
+
+    // Typeahead over project names, technologies and developer names, served from memory
+    @GetMapping("/suggest")
+    public Mono<ResponseEntity<ApiResponse<List<SuggestionTrie.Suggestion>>>> suggestProjects(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "" + ProjectSearchIndex.MAX_SUGGESTIONS) int limit) {
+        if (limit < 1 || limit > ProjectSearchIndex.MAX_SUGGESTIONS) {
+            return Mono.just(ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.<List<SuggestionTrie.Suggestion>>error(
+                    "Limit must be between 1 and " + ProjectSearchIndex.MAX_SUGGESTIONS)));
+        }
+        return Mono.fromSupplier(() -> ResponseEntity.ok(
+            ApiResponse.success(searchIndex.suggest(q, limit), "Suggestions retrieved successfully")
+        ));
     }
 
 @PostMapping("/{projectId}/purchase")
@@ -251,7 +343,7 @@ public class ProjectController {
                 .body(ApiResponse.<Project>error("Project ID is required")));
         }
 
-        // Limit the size of the files returned (avoid exceeding buffer)
+        // File bytes are not part of the response, use the download endpoint for content
         return projectService.getProjectById(id)
             .flatMap(project -> {
                 if (!project.getUserId().equals(authentication.getName())) {
@@ -259,14 +351,6 @@ public class ProjectController {
                         .status(HttpStatus.FORBIDDEN)
                         .body(ApiResponse.<Project>error("You can only access your own projects")));
                 }
-                // Limit each file's data to 256KB (262144 bytes)
-                if (project.getFiles() != null) {
-                    project.getFiles().forEach(file -> {
-                        if (file.getData() != null && file.getData().length > 262144) {
-                            file.setData(null); // or truncate, or set a flag
-                        }
-                    });
-                }
                 logger.info("Project found: {}", project.getId());
                 return Mono.just(ResponseEntity.ok(ApiResponse.success(project, "Project retrieved successfully")));
             })
@@ -284,7 +368,8 @@ public class ProjectController {
     // New public endpoint for buyers to fetch project details (including all file types)
     @GetMapping("/public/{id}")
     public Mono<ResponseEntity<ApiResponse<Project>>> getProjectByIdPublic(
-            @PathVariable @NotBlank(message = "Project ID cannot be blank") String id) {
+            @PathVariable @NotBlank(message = "Project ID cannot be blank") String id,
+            ServerWebExchange exchange) {
         logger.info("[PUBLIC] Retrieving project with ID: {}", id);
 
         if (id == null || id.trim().isEmpty()) {
@@ -297,7 +382,14 @@ public class ProjectController {
         return projectService.getProjectById(id)
             .map(project -> {
                 logger.info("[PUBLIC] Project found: {}", project.getId());
-                return ResponseEntity.ok(ApiResponse.success(project, "Project retrieved successfully"));
+                String eTag = ETagUtil.projectETag(project);
+                Instant lastModified = ETagUtil.lastModified(project);
+                if (isNotModified(exchange, eTag, lastModified)) {
+                    return this.<Project>notModified(eTag, lastModified);
+                }
+                return ResponseEntity.ok()
+                    .headers(validatorHeaders(eTag, lastModified))
+                    .body(ApiResponse.success(project, "Project retrieved successfully"));
             })
             .defaultIfEmpty(ResponseEntity
                 .status(HttpStatus.NOT_FOUND)
@@ -313,7 +405,8 @@ public class ProjectController {
     // Enhanced public endpoint for comprehensive project details including developer info
     @GetMapping("/public/{id}/details")
     public Mono<ResponseEntity<ApiResponse<ProjectDetailsDto>>> getProjectDetails(
-            @PathVariable @NotBlank(message = "Project ID cannot be blank") String id) {
+            @PathVariable @NotBlank(message = "Project ID cannot be blank") String id,
+            ServerWebExchange exchange) {
         logger.info("[PUBLIC] Retrieving comprehensive project details for ID: {}", id);
 
         if (id == null || id.trim().isEmpty()) {
@@ -328,7 +421,14 @@ public class ProjectController {
                 
                 // Fetch developer information
                 return userService.findByEmail(project.getUserId())
-                    .map(developer -> {
+                    .flatMap(developer -> {
+                        // Developer fields are rendered into the response, so they are part of the validator
+                        String eTag = ETagUtil.projectETag(project, developer.getName(), developer.getEmail(),
+                            developer.getOrganization(), developer.getDescription());
+                        Instant lastModified = ETagUtil.lastModified(project);
+                        if (isNotModified(exchange, eTag, lastModified)) {
+                            return Mono.just(this.<ProjectDetailsDto>notModified(eTag, lastModified));
+                        }
                         ProjectDetailsDto detailsDto = new ProjectDetailsDto(project, developer);
                         
                         // Add basic stats
@@ -340,12 +440,25 @@ public class ProjectController {
                         stats.put("reviewCount", 0); // TODO: Implement review system
                         detailsDto.setStats(stats);
                         
-                        return ResponseEntity.ok(ApiResponse.success(detailsDto, "Project details retrieved successfully"));
+                        return withReadmeContent(project, detailsDto)
+                            .map(dto -> ResponseEntity.ok()
+                                .headers(validatorHeaders(eTag, lastModified))
+                                .body(ApiResponse.success(dto, "Project details retrieved successfully")));
                     })
-                    .defaultIfEmpty(ResponseEntity.ok(ApiResponse.success(
-                        new ProjectDetailsDto(project, null), 
-                        "Project details retrieved successfully (developer info not found)"
-                    )));
+                    .switchIfEmpty(Mono.defer(() -> {
+                        String eTag = ETagUtil.projectETag(project);
+                        Instant lastModified = ETagUtil.lastModified(project);
+                        if (isNotModified(exchange, eTag, lastModified)) {
+                            return Mono.just(this.<ProjectDetailsDto>notModified(eTag, lastModified));
+                        }
+                        return withReadmeContent(project, new ProjectDetailsDto(project, null))
+                            .map(dto -> ResponseEntity.ok()
+                                .headers(validatorHeaders(eTag, lastModified))
+                                .body(ApiResponse.success(
+                                    dto, 
+                                    "Project details retrieved successfully (developer info not found)"
+                                )));
+                    }));
             })
             .defaultIfEmpty(ResponseEntity
                 .status(HttpStatus.NOT_FOUND)
@@ -358,6 +471,33 @@ public class ProjectController {
             });
     }
 
+    // Project summaries carry no file bytes, so README content is loaded separately
+    private Mono<ProjectDetailsDto> withReadmeContent(Project project, ProjectDetailsDto detailsDto) {
+        if (detailsDto.getReadmeContent() != null || project.getFiles() == null) {
+            return Mono.just(detailsDto);
+        }
+        return project.getFiles().stream()
+            .filter(file -> file.getFilename().toLowerCase().contains("readme"))
+            .findFirst()
+            .filter(readmeFile -> readmeFile.getSize() <= MAX_README_SIZE)
+            .map(readmeFile -> loadFileContent(project.getId(), readmeFile)
+                .map(bytes -> {
+                    detailsDto.setReadmeContent(new String(bytes));
+                    return detailsDto;
+                })
+                .defaultIfEmpty(detailsDto))
+            .orElse(Mono.just(detailsDto));
+    }
+
+    private Mono<byte[]> loadFileContent(String projectId, Project.ProjectFile file) {
+        if (file.getFileId() != null) {
+            return fileStorageService.readAllBytes(file);
+        }
+        // Legacy inline file, fetch just this entry including its data
+        return projectService.getProjectFile(projectId, file.getFilename())
+            .flatMap(fileStorageService::readAllBytes);
+    }
+
     // Get project statistics for details page
     @GetMapping("/public/{id}/stats")
     public Mono<ResponseEntity<ApiResponse<Map<String, Object>>>> getProjectStats(
@@ -390,36 +530,157 @@ public class ProjectController {
         ));
     }
 
-    // Download file from project
+    // Download file from project, streamed from storage with single byte-range support
     @GetMapping("/public/{projectId}/files/{filename}/download")
-    public Mono<ResponseEntity<byte[]>> downloadProjectFile(
+    public Mono<ResponseEntity<Flux<DataBuffer>>> downloadProjectFile(
             @PathVariable @NotBlank(message = "Project ID cannot be blank") String projectId,
-            @PathVariable @NotBlank(message = "Filename cannot be blank") String filename) {
+            @PathVariable @NotBlank(message = "Filename cannot be blank") String filename,
+            ServerWebExchange exchange) {
+        HttpHeaders requestHeaders = exchange.getRequest().getHeaders();
         logger.info("[PUBLIC] Downloading file {} from project {}", filename, projectId);
         
-        return projectService.getProjectById(projectId)
-            .flatMap(project -> {
-                if (project.getFiles() == null) {
-                    return Mono.empty();
-                }
-                
-                return project.getFiles().stream()
-                    .filter(file -> file.getFilename().equals(filename))
-                    .findFirst()
-                    .map(file -> {
-                        // TODO: Implement download tracking
-                        return ResponseEntity.ok()
-                            .header("Content-Disposition", "attachment; filename=\"" + filename + "\"")
-                            .header("Content-Type", file.getContentType())
-                            .body(file.getData());
-                    })
-                    .map(Mono::just)
-                    .orElse(Mono.empty());
-            })
+        return projectService.getProjectFile(projectId, filename)
+            .flatMap(file -> fileStorageService.open(file, acceptedEncodings(requestHeaders))
+                .map(storedFile -> {
+                    // TODO: Implement download tracking
+                    return buildDownloadResponse(file, storedFile, exchange);
+                }))
             .defaultIfEmpty(ResponseEntity.notFound().build())
             .onErrorResume(ex -> {
                 logger.error("[PUBLIC] Failed to download file: {}", ex.getMessage());
                 return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
             });
     }
+
+    // Download the whole project as a ZIP archive, written while file content streams from storage
+    @GetMapping("/public/{id}/archive")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> downloadProjectArchive(
+            @PathVariable @NotBlank(message = "Project ID cannot be blank") String id) {
+        logger.info("[PUBLIC] Downloading archive of project {}", id);
+
+        return projectService.getProjectById(id)
+            .flatMap(project -> projectArchiveService.archive(project)
+                .map(archive -> ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(project.getName() + ".zip").build().toString())
+                    .body(archive)))
+            .defaultIfEmpty(ResponseEntity.notFound().build())
+            .onErrorResume(ex -> {
+                logger.error("[PUBLIC] Failed to download project archive: {}", ex.getMessage());
+                HttpStatus status = ex instanceof ApiException apiException
+                    ? apiException.getStatus() : HttpStatus.INTERNAL_SERVER_ERROR;
+                return Mono.just(ResponseEntity.status(status).build());
+            });
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> buildDownloadResponse(Project.ProjectFile file,
+                                                                   ProjectFileStorageService.StoredFile storedFile,
+                                                                   ServerWebExchange exchange) {
+        HttpHeaders requestHeaders = exchange.getRequest().getHeaders();
+        long length = storedFile.getLength();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentDisposition(ContentDisposition.attachment().filename(file.getFilename()).build());
+        headers.set(HttpHeaders.CONTENT_TYPE, file.getContentType());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (storedFile.getEncoding() != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, storedFile.getEncoding());
+        }
+        if (storedFile.getETag() != null) {
+            headers.setETag(storedFile.getETag());
+        }
+        if (storedFile.getLastModified() != null) {
+            headers.setLastModified(storedFile.getLastModified());
+        }
+        // Revalidation is answered from metadata alone, before any range handling
+        if (isNotModified(exchange, storedFile.getETag(), storedFile.getLastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        String rangeHeader = requestHeaders.getFirst(HttpHeaders.RANGE);
+        if (rangeHeader != null && length > 0 && ifRangeMatches(requestHeaders.getFirst(HttpHeaders.IF_RANGE), storedFile)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException ex) {
+                ranges = List.of();
+            }
+            // Multiple ranges are answered with the full content, which RFC 9110 allows
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                long start;
+                long end;
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException ex) {
+                    headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+                }
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                headers.setContentLength(end - start + 1);
+                return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .headers(headers)
+                    .body(storedFile.read(start, end));
+            }
+        }
+
+        headers.setContentLength(length);
+        return ResponseEntity.ok().headers(headers).body(storedFile.read());
+    }
+
+    // Evaluates If-None-Match and If-Modified-Since, null validators never match
+    private boolean isNotModified(ServerWebExchange exchange, String eTag, Instant lastModified) {
+        return exchange.checkNotModified(eTag, lastModified != null ? lastModified : Instant.MIN);
+    }
+
+    private HttpHeaders validatorHeaders(String eTag, Instant lastModified) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(eTag);
+        if (lastModified != null) {
+            headers.setLastModified(lastModified);
+        }
+        return headers;
+    }
+
+    private <T> ResponseEntity<ApiResponse<T>> notModified(String eTag, Instant lastModified) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+            .headers(validatorHeaders(eTag, lastModified))
+            .build();
+    }
+
+    // Content codings listed in Accept-Encoding, ignoring those refused with q=0
+    private List<String> acceptedEncodings(HttpHeaders requestHeaders) {
+        List<String> encodings = new ArrayList<>();
+        for (String value : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.trim().split(";");
+                boolean refused = parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?");
+                if (!refused && !parts[0].isBlank()) {
+                    encodings.add(parts[0].trim().toLowerCase());
+                }
+            }
+        }
+        return encodings;
+    }
+
+    // A Range request is only honoured when the If-Range validator still matches
+    private boolean ifRangeMatches(String ifRange, ProjectFileStorageService.StoredFile storedFile) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(storedFile.getETag());
+        }
+        if (ifRange.startsWith("W/") || storedFile.getLastModified() == null) {
+            return false;
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return date.toEpochSecond() == storedFile.getLastModified().getEpochSecond();
+        } catch (DateTimeParseException ex) {
+            return false;
+        }
+    }
 }
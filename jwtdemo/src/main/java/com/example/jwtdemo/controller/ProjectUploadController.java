@@ -0,0 +1,125 @@
+package com.example.jwtdemo.controller;
+
+import com.example.jwtdemo.dto.ApiResponse;
+import com.example.jwtdemo.model.Project;
+import com.example.jwtdemo.model.UploadSession;
+import com.example.jwtdemo.service.UploadSessionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Resumable chunked uploads for large project files. A client creates a session,
+ * PUTs numbered chunks with their SHA-256, checks which chunks have arrived after
+ * a dropped connection and finally commits the session.
+ */
+@RestController
+@RequestMapping("/api/projects")
+public class ProjectUploadController {
+    private static final Logger logger = LoggerFactory.getLogger(ProjectUploadController.class);
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @PostMapping("/{projectId}/uploads")
+    @PreAuthorize("hasRole('DEVELOPER')")
+    public Mono<ResponseEntity<ApiResponse<UploadSession>>> createUploadSession(
+            @PathVariable @NotBlank(message = "Project ID cannot be blank") String projectId,
+            @RequestBody UploadSession request,
+            Authentication authentication) {
+        logger.info("Creating upload session for file {} in project {}", request.getFilename(), projectId);
+        return uploadSessionService.createSession(projectId, authentication.getName(), request)
+                .map(session -> ResponseEntity.ok(
+                    ApiResponse.success(session, "Upload session created successfully")
+                ))
+                .onErrorResume(ex -> {
+                    logger.error("Failed to create upload session", ex);
+                    return Mono.just(ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(ApiResponse.error("Upload session creation failed: " + ex.getMessage())));
+                });
+    }
+
+    @GetMapping("/uploads/{sessionId}")
+    @PreAuthorize("hasRole('DEVELOPER')")
+    public Mono<ResponseEntity<ApiResponse<UploadSession>>> getUploadSession(
+            @PathVariable @NotBlank(message = "Session ID cannot be blank") String sessionId,
+            Authentication authentication) {
+        return uploadSessionService.getSession(sessionId, authentication.getName())
+                .map(session -> ResponseEntity.ok(
+                    ApiResponse.success(session, "Upload session retrieved successfully")
+                ))
+                .onErrorResume(ex -> {
+                    logger.error("Failed to retrieve upload session", ex);
+                    return Mono.just(ResponseEntity
+                        .status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("Upload session not found: " + ex.getMessage())));
+                });
+    }
+
+    @PutMapping("/uploads/{sessionId}/chunks/{index}")
+    @PreAuthorize("hasRole('DEVELOPER')")
+    public Mono<ResponseEntity<ApiResponse<UploadSession>>> uploadChunk(
+            @PathVariable @NotBlank(message = "Session ID cannot be blank") String sessionId,
+            @PathVariable int index,
+            @RequestHeader("X-Chunk-SHA256") String sha256,
+            @RequestBody Flux<DataBuffer> content,
+            Authentication authentication) {
+        logger.info("Receiving chunk {} for upload session {}", index, sessionId);
+        return uploadSessionService.putChunk(sessionId, authentication.getName(), index, sha256, content)
+                .map(session -> ResponseEntity.ok(
+                    ApiResponse.success(session, "Chunk uploaded successfully")
+                ))
+                .onErrorResume(ex -> {
+                    logger.error("Failed to upload chunk {} for session {}", index, sessionId, ex);
+                    return Mono.just(ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(ApiResponse.error("Chunk upload failed: " + ex.getMessage())));
+                });
+    }
+
+    @PostMapping("/uploads/{sessionId}/commit")
+    @PreAuthorize("hasRole('DEVELOPER')")
+    public Mono<ResponseEntity<ApiResponse<Project>>> commitUploadSession(
+            @PathVariable @NotBlank(message = "Session ID cannot be blank") String sessionId,
+            Authentication authentication) {
+        logger.info("Committing upload session {}", sessionId);
+        return uploadSessionService.commit(sessionId, authentication.getName())
+                .map(project -> ResponseEntity.ok(
+                    ApiResponse.success(project, "Upload committed successfully")
+                ))
+                .onErrorResume(ex -> {
+                    logger.error("Failed to commit upload session {}", sessionId, ex);
+                    return Mono.just(ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(ApiResponse.error("Upload commit failed: " + ex.getMessage())));
+                });
+    }
+
+    @DeleteMapping("/uploads/{sessionId}")
+    @PreAuthorize("hasRole('DEVELOPER')")
+    public Mono<ResponseEntity<ApiResponse<Void>>> abortUploadSession(
+            @PathVariable @NotBlank(message = "Session ID cannot be blank") String sessionId,
+            Authentication authentication) {
+        logger.info("Aborting upload session {}", sessionId);
+        return uploadSessionService.abort(sessionId, authentication.getName())
+                .then(Mono.just(ResponseEntity.ok(
+                    ApiResponse.<Void>success(null, "Upload session aborted")
+                )))
+                .onErrorResume(ex -> {
+                    logger.error("Failed to abort upload session {}", sessionId, ex);
+                    return Mono.just(ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(ApiResponse.<Void>error("Upload abort failed: " + ex.getMessage())));
+                });
+    }
+}
@@ -2,17 +2,33 @@ package com.example.jwtdemo.controller;
 
 import com.example.jwtdemo.model.UserActivity;
 import com.example.jwtdemo.service.UserActivityService;
+import com.example.jwtdemo.dto.ActivityStreaksDto;
 import com.example.jwtdemo.dto.ApiResponse;
 import com.example.jwtdemo.dto.UserActivityDetailsDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.function.Function;
+
 @RestController
 @RequestMapping("/api/activities")
 public class UserActivityController {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserActivityController.class);
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     @Autowired
     private UserActivityService userActivityService;
 
@@ -42,38 +58,60 @@ public class UserActivityController {
         return Mono.just(ApiResponse.success(detailsFlux, "Project activities fetched"));
     }
 
+    // One page per call, newest first; the X-Next-Cursor header points at the next page
     @GetMapping("/project/{projectId}/action/{action}")
-    public Mono<ApiResponse<Flux<UserActivityDetailsDto>>> getProjectActivitiesByAction(
+    public Mono<ResponseEntity<ApiResponse<List<UserActivityDetailsDto>>>> getProjectActivitiesByAction(
             @PathVariable String projectId,
-            @PathVariable String action) {
-        Flux<UserActivityDetailsDto> detailsFlux = userActivityService.getActivitiesByProjectAndAction(projectId, action)
-            .map(this::toDetailsDto);
-        return Mono.just(ApiResponse.success(
-            detailsFlux,
-            "Project activities by action fetched"
-        ));
+            @PathVariable String action,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        return page(limit, pageable -> userActivityService.getActivitiesByProjectAndAction(projectId, action, cursor, pageable),
+            "Project activities by action fetched");
     }
 
     @GetMapping("/user/{userId}/action/{action}")
-    public Mono<ApiResponse<Flux<UserActivityDetailsDto>>> getUserActivitiesByAction(
+    public Mono<ResponseEntity<ApiResponse<List<UserActivityDetailsDto>>>> getUserActivitiesByAction(
             @PathVariable String userId,
-            @PathVariable String action) {
-        Flux<UserActivityDetailsDto> detailsFlux = userActivityService.getActivitiesByUserAndAction(userId, action)
-            .map(this::toDetailsDto);
-        return Mono.just(ApiResponse.success(
-            detailsFlux,
-            "User activities by action fetched"
-        ));
+            @PathVariable String action,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        return page(limit, pageable -> userActivityService.getActivitiesByUserAndAction(userId, action, cursor, pageable),
+            "User activities by action fetched");
+    }
+
+    private Mono<ResponseEntity<ApiResponse<List<UserActivityDetailsDto>>>> page(
+            int limit, Function<Pageable, Flux<UserActivity>> query, String message) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Mono.just(ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.<List<UserActivityDetailsDto>>error("Limit must be between 1 and " + MAX_PAGE_SIZE)));
+        }
+        // One extra activity tells whether there is a next page
+        return query.apply(PageRequest.of(0, limit + 1))
+            .collectList()
+            .map(activities -> {
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (activities.size() > limit) {
+                    activities = activities.subList(0, limit);
+                    response.header(NEXT_CURSOR_HEADER, UserActivityService.cursorOf(activities.get(limit - 1)));
+                }
+                return response.body(ApiResponse.success(activities.stream().map(this::toDetailsDto).toList(), message));
+            })
+            .onErrorResume(IllegalArgumentException.class, ex -> Mono.just(ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.<List<UserActivityDetailsDto>>error(ex.getMessage()))))
+            .onErrorResume(ex -> {
+                logger.error("Failed to retrieve activities", ex);
+                return Mono.just(ResponseEntity
+                    .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Failed to retrieve activities: " + ex.getMessage())));
+            });
     }
 
     @GetMapping("/user/{userId}/streaks")
-    public Mono<ApiResponse<Flux<UserActivityDetailsDto>>> getUserActivityStreaks(
+    public Mono<ApiResponse<ActivityStreaksDto>> getUserActivityStreaks(
             @PathVariable String userId) {
-        Flux<UserActivityDetailsDto> detailsFlux = userActivityService.getActivityStreaks(userId)
-            .map(this::toDetailsDto);
-        return Mono.just(ApiResponse.success(
-            detailsFlux,
-            "User activity streaks fetched"
-        ));
+        return userActivityService.getActivityStreaks(userId)
+            .map(streaks -> ApiResponse.success(streaks, "User activity streaks fetched"));
     }
 }
@@ -0,0 +1,16 @@
+package com.example.jwtdemo.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class ActivityStreaksDto {
+    private int currentStreak; // 0 unless the user was active today or yesterday
+    private int longestStreak;
+    private String lastActiveDay;
+    private long totalActivities;
+    private Map<String, Long> actionTotals;
+    // Activities per day over the heatmap window, oldest first, days without activity omitted
+    private Map<String, Integer> heatmap;
+}
@@ -0,0 +1,35 @@
+package com.example.jwtdemo.dto;
+
+import com.example.jwtdemo.model.Project;
+import java.util.List;
+import java.util.Map;
+
+public class ProjectSearchResult {
+    private List<Project> items;
+    private long total;
+    private int page;
+    private int size;
+    // Matches per technology, most frequent first
+    private Map<String, Integer> technologyCounts;
+
+    public ProjectSearchResult(List<Project> items, long total, int page, int size) {
+        this.items = items;
+        this.total = total;
+        this.page = page;
+        this.size = size;
+    }
+
+    // Getters
+    public List<Project> getItems() { return items; }
+    public long getTotal() { return total; }
+    public int getPage() { return page; }
+    public int getSize() { return size; }
+    public Map<String, Integer> getTechnologyCounts() { return technologyCounts; }
+
+    // Setters
+    public void setItems(List<Project> items) { this.items = items; }
+    public void setTotal(long total) { this.total = total; }
+    public void setPage(int page) { this.page = page; }
+    public void setSize(int size) { this.size = size; }
+    public void setTechnologyCounts(Map<String, Integer> technologyCounts) { this.technologyCounts = technologyCounts; }
+}
@@ -20,6 +20,10 @@ public class GlobalExceptionHandler {
         response.put("message", ex.getMessage());
         response.put("errorCode", ex.getErrorCode());
 
-        return Mono.just(ResponseEntity.status(ex.getStatus()).body(response));
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(ex.getStatus());
+        if (ex instanceof RateLimitExceededException rateLimited) {
+            builder.headers(rateLimited.toHeaders());
+        }
+        return Mono.just(builder.body(response));
     }
 }
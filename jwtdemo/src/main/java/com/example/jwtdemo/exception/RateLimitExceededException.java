@@ -0,0 +1,37 @@
+package com.example.jwtdemo.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+@Getter
+public class RateLimitExceededException extends ApiException {
+    private static final long serialVersionUID = 1L;
+
+    public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    private final int limit;
+    private final Duration retryAfter;
+
+    public RateLimitExceededException(int limit, Duration retryAfter) {
+        super(HttpStatus.TOO_MANY_REQUESTS, "Too many attempts. Please try again later.", "RATE_LIMIT_EXCEEDED");
+        this.limit = limit;
+        this.retryAfter = retryAfter;
+    }
+
+    // Retry-After is in whole seconds, rounded up so clients never retry early
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+
+    public HttpHeaders toHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(getRetryAfterSeconds()));
+        headers.set(LIMIT_HEADER, Integer.toString(limit));
+        headers.set(REMAINING_HEADER, "0");
+        return headers;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.jwtdemo.filter;
+
+import com.example.jwtdemo.config.RateLimitProperties;
+import com.example.jwtdemo.service.RequestRateLimiter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Rate limits every request per client address. Runs before the security
+ * chain, so requests with invalid tokens are counted too and a flood of them
+ * is turned away before any signature is verified.
+ */
+@Component
+public class ClientAddressRateLimitFilter implements WebFilter, Ordered {
+
+    // The security WebFilterChainProxy runs at -100
+    private static final int ORDER = -101;
+
+    @Autowired
+    private RequestRateLimiter requestRateLimiter;
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private byte[] rejectedBody;
+
+    @PostConstruct
+    public void init() throws JsonProcessingException {
+        this.rejectedBody = RequestRateLimitFilter.rejectedBody(objectMapper);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        RateLimitProperties.Http http = rateLimitProperties.getHttp();
+        if (!http.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        String ip = RequestRateLimitFilter.clientAddress(exchange.getRequest(), http.isTrustForwardedFor());
+        long wait = requestRateLimiter.tryAcquire("ip:" + ip, http.getPerIp());
+        return wait == 0 ? chain.filter(exchange) : RequestRateLimitFilter.reject(exchange, wait, rejectedBody);
+    }
+}
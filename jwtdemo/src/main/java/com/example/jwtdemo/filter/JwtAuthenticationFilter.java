@@ -1,9 +1,15 @@
 package com.example.jwtdemo.filter;
 
+import com.example.jwtdemo.model.UserRole;
+import com.example.jwtdemo.service.TokenRevocationCache;
+import com.example.jwtdemo.service.TokenVersionCache;
 import com.example.jwtdemo.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.lang.NonNull;
@@ -12,7 +18,8 @@ import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 @Component
 public class JwtAuthenticationFilter implements WebFilter {
@@ -20,6 +27,12 @@ public class JwtAuthenticationFilter implements WebFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private TokenRevocationCache tokenRevocationCache;
+
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
     @Override
     @NonNull
     public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
@@ -27,20 +40,41 @@ public class JwtAuthenticationFilter implements WebFilter {
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            try {
-                String username = jwtUtil.extractUsername(token);
-                if (username != null && jwtUtil.isTokenValid(token, username)) {
-                    UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(username, null, new ArrayList<>());
-
-                    return chain.filter(exchange)
-                            .contextWrite(context -> ReactiveSecurityContextHolder.withAuthentication(authentication));
-                }
-            } catch (Exception e) {
-                // Token validation failed
-                return chain.filter(exchange);
-            }
+            return authenticate(token)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .flatMap(authentication -> authentication
+                            .map(auth -> chain.filter(exchange)
+                                    .contextWrite(context -> ReactiveSecurityContextHolder.withAuthentication(auth)))
+                            .orElseGet(() -> chain.filter(exchange)));
         }
         return chain.filter(exchange);
     }
+
+    // Empty when the token is invalid, revoked or stale
+    private Mono<UsernamePasswordAuthenticationToken> authenticate(String token) {
+        // Expired or tampered tokens fail, verified claims come from the cache after the first request
+        return jwtUtil.verifyClaims(token)
+                .onErrorResume(e -> Mono.empty())
+                .filter(claims -> claims.getSubject() != null)
+                .flatMap(claims -> {
+                    String username = claims.getSubject();
+                    // Authorities come from the role claim, tokens without one get none
+                    UserRole role = JwtUtil.extractRole(claims);
+                    List<GrantedAuthority> authorities = role == null
+                            ? List.of()
+                            : List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(username, null, authorities);
+
+                    // Logged out tokens are revoked and tokens older than the user's last status change are stale,
+                    // both checks stay in-process unless the token looks revoked
+                    return tokenRevocationCache.isRevoked(JwtUtil.hashToken(token))
+                            .flatMap(revoked -> revoked
+                                    ? Mono.just(false)
+                                    : tokenVersionCache.isCurrent(username, JwtUtil.extractVersion(claims)))
+                            .filter(valid -> valid)
+                            .map(valid -> authentication);
+                });
+    }
 }
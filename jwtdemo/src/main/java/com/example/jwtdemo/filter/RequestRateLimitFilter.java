@@ -0,0 +1,147 @@
+package com.example.jwtdemo.filter;
+
+import com.example.jwtdemo.config.RateLimitProperties;
+import com.example.jwtdemo.dto.ApiResponse;
+import com.example.jwtdemo.service.RequestRateLimiter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits every request per authenticated user and, for the expensive
+ * routes configured under rate-limit.http.routes, per client and route. Runs
+ * right after the security chain so the user is known. The per-address limit
+ * is applied before the security chain by {@link ClientAddressRateLimitFilter}.
+ * Rejected requests get a 429 with Retry-After.
+ */
+@Component
+public class RequestRateLimitFilter implements WebFilter, Ordered {
+
+    // The security WebFilterChainProxy runs at -100
+    private static final int ORDER = -99;
+
+    @Autowired
+    private RequestRateLimiter requestRateLimiter;
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private record Route(HttpMethod method, PathPattern pattern, RateLimitProperties.Bucket bucket) {}
+
+    private final List<Route> routes = new ArrayList<>();
+
+    private byte[] rejectedBody;
+
+    @PostConstruct
+    public void init() throws JsonProcessingException {
+        this.rejectedBody = rejectedBody(objectMapper);
+        for (RateLimitProperties.Route route : rateLimitProperties.getHttp().getRoutes()) {
+            routes.add(new Route(
+                route.getMethod() == null ? null : HttpMethod.valueOf(route.getMethod()),
+                PathPatternParser.defaultInstance.parse(route.getPattern()),
+                route.getBucket()));
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        RateLimitProperties.Http http = rateLimitProperties.getHttp();
+        if (!http.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        String ip = clientAddress(exchange.getRequest(), http.isTrustForwardedFor());
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(authentication -> authentication.isAuthenticated()
+                        && !(authentication instanceof AnonymousAuthenticationToken))
+                .map(authentication -> Optional.of(authentication.getName()))
+                .defaultIfEmpty(Optional.empty())
+                .map(user -> check(exchange, http, ip, user.orElse(null)))
+                .flatMap(wait -> wait == 0 ? chain.filter(exchange) : reject(exchange, wait, rejectedBody));
+    }
+
+    // 0 when every bucket the request falls under had a token, otherwise nanoseconds to wait
+    private long check(ServerWebExchange exchange, RateLimitProperties.Http http, String ip, String user) {
+        long wait = 0;
+        if (user != null) {
+            wait = requestRateLimiter.tryAcquire("user:" + user, http.getPerUser());
+        }
+        if (wait == 0 && !routes.isEmpty()) {
+            ServerHttpRequest request = exchange.getRequest();
+            PathContainer path = request.getPath().pathWithinApplication();
+            String client = user != null ? "user:" + user : "ip:" + ip;
+            for (int i = 0; i < routes.size() && wait == 0; i++) {
+                Route route = routes.get(i);
+                if ((route.method() == null || route.method().equals(request.getMethod())) && route.pattern().matches(path)) {
+                    wait = requestRateLimiter.tryAcquire("route:" + i + ":" + client, route.bucket());
+                }
+            }
+        }
+        return wait;
+    }
+
+    static byte[] rejectedBody(ObjectMapper objectMapper) throws JsonProcessingException {
+        ApiResponse<Void> body = ApiResponse.error("Too many requests. Please slow down.");
+        body.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    static Mono<Void> reject(ServerWebExchange exchange, long waitNanos, byte[] rejectedBody) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+            Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L))));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(rejectedBody)));
+    }
+
+    static String clientAddress(ServerHttpRequest request, boolean trustForwardedFor) {
+        if (trustForwardedFor) {
+            String forwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isBlank()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+        InetSocketAddress remote = request.getRemoteAddress();
+        if (remote == null) {
+            return "unknown";
+        }
+        return remote.getAddress() != null ? remote.getAddress().getHostAddress() : remote.getHostString();
+    }
+}
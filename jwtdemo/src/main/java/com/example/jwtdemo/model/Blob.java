@@ -0,0 +1,18 @@
+package com.example.jwtdemo.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+@Data
+@Document(collection = "blobs")
+public class Blob {
+    @Id
+    private String id; // SHA-256 of the content, hex encoded
+    private String fileId; // GridFS id holding the content
+    private long size; // decoded size
+    private Long crc32; // CRC-32 of the decoded content
+    private String encoding; // Content-Encoding of the stored bytes, null when stored as is
+    private long refCount; // number of project files referencing this blob
+    private String createdAt;
+}
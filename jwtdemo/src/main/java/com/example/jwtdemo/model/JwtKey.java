@@ -0,0 +1,23 @@
+package com.example.jwtdemo.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Public half of a token signing key. Each instance signs with its own key
+ * pair and only publishes the public key, the private key never leaves the
+ * instance that generated it.
+ */
+@Data
+@Document(collection = "jwt_keys")
+public class JwtKey {
+    @Id
+    private String id; // the kid header of tokens signed with the key
+    private String algorithm;
+    private String publicKey; // Base64 X.509 encoding
+    private Instant createdAt;
+    private Instant expiresAt; // no token signed with the key is valid after this
+}
@@ -1,8 +1,12 @@
 package com.example.jwtdemo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.annotation.Id;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 
 @Document(collection = "projects")
 public class Project {
@@ -17,6 +21,7 @@ public class Project {
     private String license;
     private List<ProjectFile> files;
     private String[] technologies;
+    private List<String> technologyKeys; // technologies as matched by search, see technologyKey
     private ProjectStatus status;
     private String createdAt;
     private String updatedAt;
@@ -24,16 +29,28 @@ public class Project {
     public static class ProjectFile {
         private String filename;
         private String contentType;
-        private byte[] data; // Make sure this is byte[] for binary data
+        private String fileId; // GridFS id of the stored content
+        private String sha256; // Content hash, key of the shared blob
+        private String encoding; // Content-Encoding of the stored content, null when stored as is
+        private Long crc32; // CRC-32 of the content, lets archives store the file without compressing it
+        private byte[] data; // Legacy inline content, only set on files uploaded before GridFS storage
         private long size;
 
         public String getFilename() { return filename; }
         public String getContentType() { return contentType; }
+        public String getFileId() { return fileId; }
+        public String getSha256() { return sha256; }
+        public String getEncoding() { return encoding; }
+        public Long getCrc32() { return crc32; }
         public byte[] getData() { return data; }
         public long getSize() { return size; }
 
         public void setFilename(String filename) { this.filename = filename; }
         public void setContentType(String contentType) { this.contentType = contentType; }
+        public void setFileId(String fileId) { this.fileId = fileId; }
+        public void setSha256(String sha256) { this.sha256 = sha256; }
+        public void setEncoding(String encoding) { this.encoding = encoding; }
+        public void setCrc32(Long crc32) { this.crc32 = crc32; }
         public void setData(byte[] data) { this.data = data; }
         public void setSize(long size) { this.size = size; }
     }
@@ -49,6 +66,8 @@ public class Project {
     public String getLicense() { return license; }
     public List<ProjectFile> getFiles() { return files; }
     public String[] getTechnologies() { return technologies; }
+    @JsonIgnore
+    public List<String> getTechnologyKeys() { return technologyKeys; }
     public ProjectStatus getStatus() { return status; }
     public String getCreatedAt() { return createdAt; }
     public String getUpdatedAt() { return updatedAt; }
@@ -63,8 +82,27 @@ public class Project {
     public void setGitignoreTemplate(String gitignoreTemplate) { this.gitignoreTemplate = gitignoreTemplate; }
     public void setLicense(String license) { this.license = license; }
     public void setFiles(List<ProjectFile> files) { this.files = files; }
-    public void setTechnologies(String[] technologies) { this.technologies = technologies; }
+    public void setTechnologies(String[] technologies) {
+        this.technologies = technologies;
+        this.technologyKeys = technologyKeys(technologies);
+    }
     public void setStatus(ProjectStatus status) { this.status = status; }
     public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
     public void setUpdatedAt(String updatedAt) { this.updatedAt = updatedAt; }
+
+    /**
+     * Form under which technologies are filtered and counted, so "React" and
+     * " react" are the same technology. Null for a blank technology.
+     */
+    public static String technologyKey(String technology) {
+        return technology == null || technology.isBlank() ? null : technology.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static List<String> technologyKeys(String[] technologies) {
+        return technologies == null ? null : Arrays.stream(technologies)
+            .map(Project::technologyKey)
+            .filter(Objects::nonNull)
+            .distinct()
+            .toList();
+    }
 }
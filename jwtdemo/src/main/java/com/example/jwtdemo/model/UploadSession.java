@@ -0,0 +1,45 @@
+package com.example.jwtdemo.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Document(collection = "upload_sessions")
+public class UploadSession {
+    @Id
+    private String id;
+    private String projectId;
+    private String userId;
+    private String filename;
+    private String contentType;
+    private long totalSize;
+    private String sha256; // optional SHA-256 of the whole file, lets a duplicate skip the GridFS write
+    private int chunkSize;
+    private int chunkCount;
+    private Map<String, Chunk> chunks = new HashMap<>(); // keyed by chunk index
+    private UploadSessionStatus status;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+    private LocalDateTime commitStartedAt; // set while COMMITTING
+
+    @Data
+    public static class Chunk {
+        private int index;
+        private String fileId; // GridFS id of the raw chunk
+        private long size;
+        private String sha256;
+    }
+
+    public long getReceivedBytes() {
+        return chunks.values().stream().mapToLong(Chunk::getSize).sum();
+    }
+
+    public long expectedChunkSize(int index) {
+        return index == chunkCount - 1 ? totalSize - (long) index * chunkSize : chunkSize;
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.jwtdemo.model;
+
+public enum UploadSessionStatus {
+    OPEN,
+    COMMITTING
+}
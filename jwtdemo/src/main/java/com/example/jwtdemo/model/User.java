@@ -28,4 +28,6 @@ public class User {
     private boolean isActive;
     private String createdAt;
     private String description;
+    // Bumped to invalidate every token issued to the user so far
+    private long tokenVersion;
 }
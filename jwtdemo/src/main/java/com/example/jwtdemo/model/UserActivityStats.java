@@ -0,0 +1,29 @@
+package com.example.jwtdemo.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Activity summary of one user, updated as activities are written so reading
+ * it never touches the activity history. Days are ISO dates (yyyy-MM-dd) in
+ * the server time zone, as activity timestamps are.
+ */
+@Data
+@Document(collection = "user_activity_stats")
+public class UserActivityStats {
+    @Id
+    private String userId;
+    private long total;
+    private Map<String, Long> actions; // total per action
+    private Map<String, Integer> days; // activities per day, only days within the heatmap window
+    private String lastActiveDay;
+    private int currentStreak; // consecutive active days ending on lastActiveDay
+    private int longestStreak;
+    private boolean complete; // false until activities written before the summary existed are counted
+    private long version; // bumped by every update, guards the rebuild against concurrent updates
+    private List<String> countedIds; // recent activities counted by the rebuild, skipped if recorded again
+}
@@ -0,0 +1,11 @@
+package com.example.jwtdemo.repository;
+
+import com.example.jwtdemo.model.JwtKey;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+public interface JwtKeyRepository extends ReactiveMongoRepository<JwtKey, String> {
+    Flux<JwtKey> findByExpiresAtAfter(Instant time);
+}
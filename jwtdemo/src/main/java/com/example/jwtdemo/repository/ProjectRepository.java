@@ -2,6 +2,9 @@ package com.example.jwtdemo.repository;
 
 import com.example.jwtdemo.model.Project;
 import com.example.jwtdemo.model.ProjectStatus;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
@@ -12,4 +15,26 @@ public interface ProjectRepository extends ReactiveCrudRepository<Project, Strin
     // Add custom query methods here if needed
     Flux<Project> findByUserId(String userId);
     Mono<Long> countByStatus(ProjectStatus status);
+
+    // Summaries leave out inline file data; file bytes are only read by the download path
+    @Query(value = "{}", fields = "{ 'files.data': 0 }")
+    Flux<Project> findAllSummaries();
+
+    // Newest first, keyset pagination continues after the last (createdAt, _id) seen
+    @Query(value = "{}", fields = "{ 'files.data': 0 }", sort = "{ 'createdAt': -1, '_id': -1 }")
+    Flux<Project> findSummariesNewestFirst(Pageable pageable);
+
+    @Query(value = "{ '$or': [ { 'createdAt': { '$lt': ?0 } }, { 'createdAt': ?0, '_id': { '$lt': ?1 } } ] }",
+           fields = "{ 'files.data': 0 }", sort = "{ 'createdAt': -1, '_id': -1 }")
+    Flux<Project> findSummariesNewestFirstAfter(String createdAt, ObjectId id, Pageable pageable);
+
+    @Query(value = "{ 'userId': ?0 }", fields = "{ 'files.data': 0 }")
+    Flux<Project> findSummariesByUserId(String userId);
+
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'files.data': 0 }")
+    Mono<Project> findSummaryById(String id);
+
+    // Returns the project with only the matching file entry in 'files'
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'userId': 1, 'updatedAt': 1, 'files': { '$elemMatch': { 'filename': ?1 } } }")
+    Mono<Project> findByIdWithFile(String id, String filename);
 }
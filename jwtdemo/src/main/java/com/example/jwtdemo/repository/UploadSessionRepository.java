@@ -0,0 +1,12 @@
+package com.example.jwtdemo.repository;
+
+import com.example.jwtdemo.model.UploadSession;
+import com.example.jwtdemo.model.UploadSessionStatus;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+
+public interface UploadSessionRepository extends ReactiveMongoRepository<UploadSession, String> {
+    Flux<UploadSession> findByStatusAndExpiresAtBefore(UploadSessionStatus status, LocalDateTime time);
+}
@@ -1,10 +1,31 @@
 package com.example.jwtdemo.repository;
 
 import com.example.jwtdemo.model.UserActivity;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
 
+import java.time.LocalDateTime;
+
 public interface UserActivityRepository extends ReactiveCrudRepository<UserActivity, String> {
     Flux<UserActivity> findByUserIdOrderByTimestampDesc(String userId);
     Flux<UserActivity> findByProjectIdOrderByTimestampDesc(String projectId);
+
+    // Newest first by action, keyset pagination continues after the last (timestamp, _id) seen.
+    // Served by the userId_action_timestamp and projectId_action_timestamp indexes, actions are stored upper case.
+    @Query(value = "{ 'userId': ?0, 'action': ?1 }", sort = "{ 'timestamp': -1, '_id': -1 }")
+    Flux<UserActivity> findByUserAndActionNewestFirst(String userId, String action, Pageable pageable);
+
+    @Query(value = "{ 'userId': ?0, 'action': ?1, '$or': [ { 'timestamp': { '$lt': ?2 } }, { 'timestamp': ?2, '_id': { '$lt': ?3 } } ] }",
+           sort = "{ 'timestamp': -1, '_id': -1 }")
+    Flux<UserActivity> findByUserAndActionNewestFirstAfter(String userId, String action, LocalDateTime timestamp, ObjectId id, Pageable pageable);
+
+    @Query(value = "{ 'projectId': ?0, 'action': ?1 }", sort = "{ 'timestamp': -1, '_id': -1 }")
+    Flux<UserActivity> findByProjectAndActionNewestFirst(String projectId, String action, Pageable pageable);
+
+    @Query(value = "{ 'projectId': ?0, 'action': ?1, '$or': [ { 'timestamp': { '$lt': ?2 } }, { 'timestamp': ?2, '_id': { '$lt': ?3 } } ] }",
+           sort = "{ 'timestamp': -1, '_id': -1 }")
+    Flux<UserActivity> findByProjectAndActionNewestFirstAfter(String projectId, String action, LocalDateTime timestamp, ObjectId id, Pageable pageable);
 }
@@ -0,0 +1,7 @@
+package com.example.jwtdemo.repository;
+
+import com.example.jwtdemo.model.UserActivityStats;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface UserActivityStatsRepository extends ReactiveMongoRepository<UserActivityStats, String> {
+}
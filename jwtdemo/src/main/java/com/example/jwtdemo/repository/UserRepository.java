@@ -2,6 +2,7 @@ package com.example.jwtdemo.repository;
 
 import com.example.jwtdemo.model.User;
 import com.example.jwtdemo.model.UserRole;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -10,4 +11,8 @@ public interface UserRepository extends ReactiveMongoRepository<User, String> {
     Mono<User> findByEmail(String email);
     Mono<User> findByEmailAndRole(String email, UserRole role);
     Flux<User> findByRole(UserRole role);
+
+    // Only email and token version, for users whose tokens were invalidated at least once
+    @Query(value = "{ 'tokenVersion': { '$gt': 0 } }", fields = "{ 'email': 1, 'tokenVersion': 1 }")
+    Flux<User> findTokenVersions();
 }
@@ -5,10 +5,13 @@ import com.example.jwtdemo.exception.ApiException;
 import com.example.jwtdemo.model.*;
 import com.example.jwtdemo.repository.UserRepository;
 import com.example.jwtdemo.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import java.time.Duration;
@@ -20,12 +23,13 @@ import java.util.UUID;
  */
 @Service
 public class AuthService {
+    private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
 
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
     private JwtUtil jwtUtil;
@@ -39,6 +43,9 @@ public class AuthService {
     @Autowired
     private RateLimitService rateLimitService;
 
+    @Autowired
+    private TokenRevocationCache tokenRevocationCache;
+
     @Value("${app.reset-token.expiration:3600}") // 1 hour default
     private long resetTokenExpiration;
 
@@ -70,7 +77,7 @@ public class AuthService {
             
             // Create a login response for the admin
             LoginResponse adminResponse = new LoginResponse(
-                jwtUtil.generateToken(ADMIN_EMAIL), 
+                jwtUtil.generateToken(ADMIN_EMAIL, "admin", UserRole.ADMIN, 0), 
                 UserRole.ADMIN, 
                 "admin", 
                 "MSME Admin"
@@ -80,13 +87,20 @@ public class AuthService {
 
         // Regular user login
         return userRepository.findByEmailAndRole(loginRequest.getEmail(), loginRequest.getRole())
-                .filter(user -> passwordEncoder.matches(loginRequest.getPassword(), user.getPassword()))
-                .map(this::createLoginResponse)
+                .filterWhen(user -> passwordHashingService.matches(loginRequest.getPassword(), user.getPassword()))
                 .switchIfEmpty(Mono.error(new ApiException(
                     HttpStatus.UNAUTHORIZED,
                     "Invalid credentials or role",
                     "INVALID_CREDENTIALS"
-                )));
+                )))
+                .flatMap(user -> upgradePasswordHash(user, loginRequest.getPassword()))
+                .flatMap(user -> user.isActive()
+                    ? Mono.just(createLoginResponse(user))
+                    : Mono.error(new ApiException(
+                        HttpStatus.FORBIDDEN,
+                        "Account is deactivated",
+                        "ACCOUNT_DEACTIVATED"
+                    )));
     }
 
     /**
@@ -118,8 +132,28 @@ public class AuthService {
         return registerUser(user).map(this::createLoginResponse);
     }
 
+    /**
+     * Rehashes the password with the current algorithm and work factor when
+     * the stored hash is outdated. Only possible at login, where the raw
+     * password is known. A failed upgrade is retried at the next login.
+     */
+    private Mono<User> upgradePasswordHash(User user, String rawPassword) {
+        if (!passwordHashingService.needsUpgrade(user.getPassword())) {
+            return Mono.just(user);
+        }
+        return passwordHashingService.encode(rawPassword)
+                .flatMap(encoded -> {
+                    user.setPassword(encoded);
+                    return userRepository.save(user);
+                })
+                .onErrorResume(ex -> {
+                    logger.warn("Failed to upgrade password hash of user {}: {}", user.getId(), ex.getMessage());
+                    return Mono.just(user);
+                });
+    }
+
     private LoginResponse createLoginResponse(User user) {
-        String token = jwtUtil.generateToken(user.getEmail());
+        String token = jwtUtil.generateToken(user.getEmail(), user.getId(), user.getRole(), user.getTokenVersion());
         return new LoginResponse(token, user.getRole(), user.getId(), user.getName());
     }
 
@@ -149,10 +183,13 @@ public class AuthService {
                             "EMAIL_EXISTS"
                         ));
                     }
-                    user.setPassword(passwordEncoder.encode(user.getPassword()));
-                    user.setCreatedAt(LocalDateTime.now().toString());
-                    user.setActive(true);
-                    return userRepository.save(user);
+                    return passwordHashingService.encode(user.getPassword())
+                            .flatMap(encoded -> {
+                                user.setPassword(encoded);
+                                user.setCreatedAt(LocalDateTime.now().toString());
+                                user.setActive(true);
+                                return userRepository.save(user);
+                            });
                 });
     }
 
@@ -166,7 +203,7 @@ public class AuthService {
                 )))
                 .flatMap(user -> {
                     String resetToken = UUID.randomUUID().toString();
-                    return tokenService.saveResetToken(user.getId(), resetToken, Duration.ofSeconds(resetTokenExpiration))
+                    return tokenService.saveResetToken(resetToken, user.getId(), Duration.ofSeconds(resetTokenExpiration))
                             .then(sendResetEmail(user.getEmail(), resetToken));
                 });
     }
@@ -190,22 +227,25 @@ public class AuthService {
                     rateLimitService.checkRateLimit(userId, "password_change")
                         .then(userRepository.findById(userId))
                 )
-                .flatMap(user -> {
-                    // Check if new password is different from the current one
-                    if (passwordEncoder.matches(request.getNewPassword(), user.getPassword())) {
-                        return Mono.error(new ApiException(
-                            HttpStatus.BAD_REQUEST,
-                            "New password must be different from the current password",
-                            "SAME_PASSWORD"
-                        ));
-                    }
-
-                    user.setPassword(passwordEncoder.encode(request.getNewPassword()));
-                    return userRepository.save(user)
-                            .then(tokenService.removeResetToken(request.getToken()))
-                            .then(rateLimitService.resetRateLimit(user.getId(), "password_change"))
-                            .then(sendPasswordChangeNotification(user.getEmail()));
-                });
+                .flatMap(user -> passwordHashingService.matches(request.getNewPassword(), user.getPassword())
+                    .flatMap(samePassword -> {
+                        // Check if new password is different from the current one
+                        if (samePassword) {
+                            return Mono.error(new ApiException(
+                                HttpStatus.BAD_REQUEST,
+                                "New password must be different from the current password",
+                                "SAME_PASSWORD"
+                            ));
+                        }
+                        return passwordHashingService.encode(request.getNewPassword());
+                    })
+                    .flatMap(encoded -> {
+                        user.setPassword(encoded);
+                        return userRepository.save(user)
+                                .then(tokenService.removeResetToken(request.getToken()))
+                                .then(rateLimitService.resetRateLimit(user.getId(), "password_change"))
+                                .then(sendPasswordChangeNotification(user.getEmail()));
+                    }));
     }
 
     public Mono<Boolean> verifyResetToken(String token) {
@@ -266,32 +306,29 @@ public class AuthService {
             ));
         }
 
-        try {
-            String email = jwtUtil.extractUsername(token);
-            if (email != null && jwtUtil.isTokenValid(token, email)) {
-                return userRepository.findByEmail(email)
-                    .map(user -> {
-                        String newToken = jwtUtil.generateToken(email);
-                        return new LoginResponse(newToken, user.getRole(), user.getId(), user.getName());
-                    })
-                    .switchIfEmpty(Mono.error(new ApiException(
-                        HttpStatus.NOT_FOUND,
-                        "User not found",
-                        "USER_NOT_FOUND"
-                    )));
-            }
-            return Mono.error(new ApiException(
-                HttpStatus.UNAUTHORIZED,
-                "Invalid or expired token",
-                "INVALID_TOKEN"
-            ));
-        } catch (Exception e) {
-            return Mono.error(new ApiException(
-                HttpStatus.INTERNAL_SERVER_ERROR,
-                "Error refreshing token: " + e.getMessage(),
-                "TOKEN_REFRESH_ERROR"
-            ));
-        }
+        return verifyToken(token, "Error refreshing token: ", "TOKEN_REFRESH_ERROR")
+            .flatMap(claims -> tokenRevocationCache.isRevoked(JwtUtil.hashToken(token))
+                .flatMap(revoked -> revoked
+                    ? Mono.error(new ApiException(
+                        HttpStatus.UNAUTHORIZED,
+                        "Token has been revoked",
+                        "INVALID_TOKEN"
+                    ))
+                    : userRepository.findByEmail(claims.getSubject())
+                        .switchIfEmpty(Mono.error(new ApiException(
+                            HttpStatus.NOT_FOUND,
+                            "User not found",
+                            "USER_NOT_FOUND"
+                        )))
+                        // Tokens issued before the user's last status change are not refreshed
+                        .flatMap(user -> user.isActive()
+                            && JwtUtil.extractVersion(claims) >= user.getTokenVersion()
+                            ? Mono.just(createLoginResponse(user))
+                            : Mono.error(new ApiException(
+                                HttpStatus.UNAUTHORIZED,
+                                "Token has been revoked",
+                                "INVALID_TOKEN"
+                            )))));
     }
 
     /**
@@ -309,25 +346,28 @@ public class AuthService {
             ));
         }
 
-        try {
-            String email = jwtUtil.extractUsername(token);
-            if (email == null || !jwtUtil.isTokenValid(token, email)) {
-                return Mono.error(new ApiException(
-                    HttpStatus.UNAUTHORIZED,
-                    "Invalid or expired token",
-                    "INVALID_TOKEN"
-                ));
-            }
-            
-            // Invalidate the token by adding it to the TokenService's blacklist
-            return tokenService.blacklistToken(token)
-                .then(Mono.empty());
-        } catch (Exception e) {
-            return Mono.error(new ApiException(
-                HttpStatus.INTERNAL_SERVER_ERROR,
-                "Error during logout: " + e.getMessage(),
-                "LOGOUT_ERROR"
-            ));
-        }
+        // Invalidate the token by adding it to the TokenService's blacklist
+        // The local revocation filter picks it up right away, other instances through Redis
+        return verifyToken(token, "Error during logout: ", "LOGOUT_ERROR")
+            .flatMap(claims -> tokenService.blacklistToken(token))
+            .then(Mono.fromRunnable(() -> tokenRevocationCache.add(JwtUtil.hashToken(token))));
+    }
+
+    /**
+     * Verifies the token once, loading the key of a kid rotated in on another
+     * instance if needed. Invalid or expired tokens and tokens without a
+     * subject fail with 401, anything else with 500 under the given code.
+     */
+    private Mono<Claims> verifyToken(String token, String errorPrefix, String errorCode) {
+        return jwtUtil.verifyClaims(token)
+            .onErrorMap(ex -> !(ex instanceof ApiException), ex -> ex instanceof JwtException || ex instanceof IllegalArgumentException
+                ? new ApiException(HttpStatus.UNAUTHORIZED, "Invalid or expired token", "INVALID_TOKEN")
+                : new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, errorPrefix + ex.getMessage(), errorCode))
+            .filter(claims -> claims.getSubject() != null)
+            .switchIfEmpty(Mono.error(new ApiException(
+                HttpStatus.UNAUTHORIZED,
+                "Invalid or expired token",
+                "INVALID_TOKEN"
+            )));
     }
 }
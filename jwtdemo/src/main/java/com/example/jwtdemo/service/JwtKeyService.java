@@ -0,0 +1,248 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.exception.ApiException;
+import com.example.jwtdemo.model.JwtKey;
+import com.example.jwtdemo.repository.JwtKeyRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Key ring for token signatures. Every instance signs with its own ES256 key
+ * pair and rotates it on a fixed interval; only the public keys are stored, in
+ * the jwt_keys collection, and published as a JWKS. A retired key keeps
+ * verifying the tokens it signed until they expire, so rotation logs nobody
+ * out. Verification keys are looked up once per kid and then cached.
+ */
+@Service
+public class JwtKeyService {
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyService.class);
+
+    public static final SignatureAlgorithm ALGORITHM = SignatureAlgorithm.ES256;
+    private static final int COORDINATE_LENGTH = 32; // bytes of a P-256 coordinate
+    private static final Duration UNKNOWN_KEY_TTL = Duration.ofSeconds(30);
+
+    @Autowired
+    private JwtKeyRepository jwtKeyRepository;
+
+    @Value("${jwt.expiration}")
+    private long expiration;
+
+    @Value("${jwt.keys.rotation-interval:86400000}")
+    private long rotationInterval;
+
+    @Value("${jwt.keys.cache-size:1000}")
+    private long cacheSize;
+
+    public record SigningKey(String kid, PrivateKey privateKey, Instant createdAt) {}
+
+    private record VerificationKey(PublicKey key, Instant expiresAt) {}
+
+    private volatile SigningKey signingKey;
+
+    private final AtomicBoolean rotating = new AtomicBoolean();
+
+    // Verification keys by kid, empty for kids that were looked up and not found
+    private AsyncCache<String, Optional<VerificationKey>> verificationKeys;
+
+    @PostConstruct
+    public void init() {
+        // Known keys stay cached until they expire, unknown kids are looked up again shortly after
+        this.verificationKeys = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, Optional<VerificationKey>>() {
+                    @Override
+                    public long expireAfterCreate(String kid, Optional<VerificationKey> key, long currentTime) {
+                        if (key.isEmpty()) {
+                            return UNKNOWN_KEY_TTL.toNanos();
+                        }
+                        long remainingMillis = key.get().expiresAt().toEpochMilli() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String kid, Optional<VerificationKey> key, long currentTime, long currentDuration) {
+                        return expireAfterCreate(kid, key, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String kid, Optional<VerificationKey> key, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .buildAsync();
+    }
+
+    /**
+     * Publishes the first signing key without holding up startup. Tokens
+     * cannot be issued until it is published, so it is retried until then.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (signingKey != null || !rotating.compareAndSet(false, true)) {
+            return;
+        }
+        Mono.defer(this::rotate)
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1))
+                .doBeforeRetry(retry -> logger.warn("Failed to publish token signing key: {}", retry.failure().getMessage())))
+            .doFinally(signal -> rotating.set(false))
+            .subscribe(key -> { }, ex -> logger.error("Failed to publish token signing key: {}", ex.getMessage()));
+    }
+
+    /**
+     * Replaces the signing key once it has signed for a full rotation interval.
+     * Checked often, so a rotation that failed is retried well before the
+     * tokens of the current key outlive it.
+     */
+    @Scheduled(fixedDelayString = "${jwt.keys.rotation-check-interval:60000}")
+    public void rotateIfDue() {
+        SigningKey current = signingKey;
+        if (current != null && current.createdAt().plusMillis(rotationInterval).isAfter(Instant.now())) {
+            return;
+        }
+        if (!rotating.compareAndSet(false, true)) {
+            return;
+        }
+        rotate()
+            .doFinally(signal -> rotating.set(false))
+            .subscribe(key -> { }, ex -> logger.warn("Failed to rotate token signing key: {}", ex.getMessage()));
+    }
+
+    /**
+     * Generates a key pair and publishes its public key. The new key only
+     * starts signing once other instances can find it.
+     */
+    public Mono<SigningKey> rotate() {
+        KeyPair pair = Keys.keyPairFor(ALGORITHM);
+        Instant now = Instant.now();
+        JwtKey key = new JwtKey();
+        key.setId(UUID.randomUUID().toString());
+        key.setAlgorithm(ALGORITHM.getValue());
+        key.setPublicKey(Base64.getEncoder().encodeToString(pair.getPublic().getEncoded()));
+        key.setCreatedAt(now);
+        // Signs for one interval, its tokens then live up to their expiration;
+        // the second interval leaves room for late rotations
+        key.setExpiresAt(now.plusMillis(2 * rotationInterval + expiration));
+        return jwtKeyRepository.insert(key)
+            .map(saved -> {
+                VerificationKey verificationKey = new VerificationKey(pair.getPublic(), saved.getExpiresAt());
+                verificationKeys.put(saved.getId(), CompletableFuture.completedFuture(Optional.of(verificationKey)));
+                SigningKey signing = new SigningKey(saved.getId(), pair.getPrivate(), now);
+                signingKey = signing;
+                logger.info("Rotated token signing key to {}", saved.getId());
+                return signing;
+            });
+    }
+
+    public SigningKey signingKey() {
+        SigningKey current = signingKey;
+        if (current == null) {
+            // Only until the first key is published at startup, clients can retry
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "No token signing key available", "SIGNING_KEY_UNAVAILABLE");
+        }
+        return current;
+    }
+
+    /**
+     * Looks up the public key of a kid, from the cache when it was seen before.
+     *
+     * @param kid Key id from a token header.
+     * @return Mono of the key, empty when the kid is unknown or expired.
+     */
+    public Mono<PublicKey> verificationKey(String kid) {
+        return Mono.fromFuture(verificationKeys.get(kid, (id, executor) -> jwtKeyRepository.findById(id)
+                    .filter(key -> key.getExpiresAt().isAfter(Instant.now()))
+                    .map(key -> Optional.of(new VerificationKey(decodePublicKey(key.getPublicKey()), key.getExpiresAt())))
+                    .defaultIfEmpty(Optional.empty())
+                    .toFuture()))
+            .flatMap(key -> Mono.justOrEmpty(key.map(VerificationKey::key)));
+    }
+
+    /**
+     * Public key of a kid if it is already cached, for the synchronous
+     * verification path. Null when the kid has not been loaded yet.
+     */
+    public PublicKey cachedVerificationKey(String kid) {
+        CompletableFuture<Optional<VerificationKey>> future = verificationKeys.getIfPresent(kid);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join().map(VerificationKey::key).orElse(null);
+    }
+
+    /**
+     * Public keys of every key that can still verify tokens, as a JWK Set.
+     */
+    public Mono<Map<String, Object>> jwks() {
+        return jwtKeyRepository.findByExpiresAtAfter(Instant.now())
+            .map(key -> toJwk(key.getId(), (ECPublicKey) decodePublicKey(key.getPublicKey())))
+            .collectList()
+            .map(keys -> Map.of("keys", keys));
+    }
+
+    private static Map<String, Object> toJwk(String kid, ECPublicKey key) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-256");
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", ALGORITHM.getValue());
+        jwk.put("x", encoder.encodeToString(coordinate(key.getW().getAffineX())));
+        jwk.put("y", encoder.encodeToString(coordinate(key.getW().getAffineY())));
+        return jwk;
+    }
+
+    // Unsigned big-endian value left padded to the coordinate length
+    private static byte[] coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > COORDINATE_LENGTH) {
+            return Arrays.copyOfRange(bytes, bytes.length - COORDINATE_LENGTH, bytes.length);
+        }
+        byte[] padded = new byte[COORDINATE_LENGTH];
+        System.arraycopy(bytes, 0, padded, COORDINATE_LENGTH - bytes.length, bytes.length);
+        return padded;
+    }
+
+    private static PublicKey decodePublicKey(String encoded) {
+        try {
+            return KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid token verification key", e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.exception.ApiException;
+import com.example.jwtdemo.model.Project;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds ZIP archives of whole projects as a stream. Entries are written while
+ * file content is read from storage, so only the buffer in flight is held in
+ * memory no matter how large the project is. Every file is resolved before the
+ * first byte is written, so missing content fails the request instead of
+ * truncating an archive that is already being sent.
+ */
+@Service
+public class ProjectArchiveService {
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ProjectFileStorageService fileStorageService;
+
+    /**
+     * Resolves all files of a project and streams them as a ZIP archive.
+     *
+     * @param project Project summary.
+     * @return Mono of the archive stream, or an error if any file content is missing.
+     */
+    public Mono<Flux<DataBuffer>> archive(Project project) {
+        List<Project.ProjectFile> files = project.getFiles() == null ? List.of() : project.getFiles();
+        Set<String> entryNames = new HashSet<>();
+        return Flux.fromIterable(files)
+            .filter(file -> entryNames.add(file.getFilename()))
+            .concatMap(file -> openContent(project.getId(), file)
+                .switchIfEmpty(Mono.error(new ApiException(HttpStatus.NOT_FOUND,
+                    "Content of file " + file.getFilename() + " not found", "FILE_CONTENT_NOT_FOUND")))
+                .map(storedFile -> new Entry(file, storedFile)))
+            .collectList()
+            .map(ProjectArchiveService::stream);
+    }
+
+    private static Flux<DataBuffer> stream(List<Entry> entries) {
+        return Flux.defer(() -> {
+            DrainableOutputStream sink = new DrainableOutputStream();
+            ZipOutputStream zip = new ZipOutputStream(sink);
+
+            return Flux.fromIterable(entries)
+                .concatMap(entry -> Flux.concat(
+                    Mono.fromCallable(() -> {
+                        zip.putNextEntry(newEntry(entry));
+                        return sink.drain();
+                    }),
+                    entry.content().read().map(dataBuffer -> {
+                        try (DataBuffer.ByteBufferIterator buffers = dataBuffer.readableByteBuffers()) {
+                            buffers.forEachRemaining(buffer -> write(zip, buffer));
+                        } finally {
+                            DataBufferUtils.release(dataBuffer);
+                        }
+                        return sink.drain();
+                    }),
+                    Mono.fromCallable(() -> {
+                        zip.closeEntry();
+                        return sink.drain();
+                    })))
+                .concatWith(Mono.fromCallable(() -> {
+                    zip.finish();
+                    return sink.drain();
+                }))
+                .filter(dataBuffer -> dataBuffer.readableByteCount() > 0)
+                // Also releases the deflater when the download is cancelled or fails
+                .doFinally(signal -> closeQuietly(zip));
+        });
+    }
+
+    // Already compressed content is stored as is when its CRC is known up front and
+    // the blob matches the recorded size, anything else is deflated with a data descriptor
+    private static ZipEntry newEntry(Entry archiveEntry) {
+        Project.ProjectFile file = archiveEntry.file();
+        ZipEntry entry = new ZipEntry(file.getFilename());
+        if (file.getCrc32() != null && file.getEncoding() == null
+                && archiveEntry.content().getLength() == file.getSize()
+                && ProjectFileStorageService.isPrecompressed(file.getContentType())) {
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(file.getSize());
+            entry.setCompressedSize(file.getSize());
+            entry.setCrc(file.getCrc32());
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+        }
+        return entry;
+    }
+
+    private Mono<ProjectFileStorageService.StoredFile> openContent(String projectId, Project.ProjectFile file) {
+        if (file.getFileId() != null) {
+            return fileStorageService.open(file);
+        }
+        // Legacy inline file, summaries carry no data so fetch this entry on its own
+        return projectService.getProjectFile(projectId, file.getFilename())
+            .flatMap(fileStorageService::open);
+    }
+
+    private static void write(ZipOutputStream zip, ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        try {
+            zip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(ZipOutputStream zip) {
+        try {
+            zip.close();
+        } catch (IOException ignored) {
+            // Nothing left to send, the archive is finished or abandoned
+        }
+    }
+
+    private record Entry(Project.ProjectFile file, ProjectFileStorageService.StoredFile content) {}
+
+    // Collects what the ZipOutputStream wrote since the last drain
+    private static class DrainableOutputStream extends ByteArrayOutputStream {
+        DataBuffer drain() {
+            DataBuffer dataBuffer = DefaultDataBufferFactory.sharedInstance.wrap(toByteArray());
+            reset();
+            return dataBuffer;
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.exception.ApiException;
+import com.example.jwtdemo.model.Blob;
+import com.example.jwtdemo.model.Project;
+import com.example.jwtdemo.model.UploadSession;
+import com.example.jwtdemo.util.ContentCodec;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Stores project file content in GridFS. Uploads are streamed chunk by chunk so
+ * the heap cost of an upload does not depend on the size of the file. Content is
+ * addressed by its SHA-256 and shared between project files through reference
+ * counted blobs. Compressible content is encoded with a ContentCodec on upload.
+ */
+@Service
+public class ProjectFileStorageService {
+    private static final Logger logger = LoggerFactory.getLogger(ProjectFileStorageService.class);
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private static final int CHUNK_BATCH_SIZE = 4; // chunks fetched per cursor batch while streaming
+    private static final int MIN_COMPRESSION_SAMPLE = 512;
+    private static final List<String> PRECOMPRESSED_TYPES = List.of(
+        "zip", "gzip", "x-7z", "x-rar", "x-bzip", "x-xz", "compressed", "pdf", "woff", "zstd");
+
+    @Autowired
+    private ReactiveGridFsTemplate gridFsTemplate;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Value("${spring.data.mongodb.gridfs.bucket:fs}")
+    private String bucket;
+
+    @Value("${storage.compression.encoding:deflate}")
+    private String compressionEncoding;
+
+    // Compress only when a sample shrinks to at most this fraction of its size
+    @Value("${storage.compression.max-ratio:0.9}")
+    private double maxCompressionRatio;
+
+    private final Map<String, ContentCodec> codecs = new HashMap<>();
+
+    @Autowired
+    void setCodecs(List<ContentCodec> contentCodecs) {
+        contentCodecs.forEach(codec -> codecs.put(codec.getEncoding(), codec));
+    }
+
+    /**
+     * Handle on stored content that can be streamed in whole or by byte range.
+     */
+    public static class StoredFile {
+        private final long length;
+        private final Instant lastModified;
+        private final String eTag;
+        private final String encoding;
+        private final RangeReader reader;
+
+        StoredFile(long length, Instant lastModified, String eTag, String encoding, RangeReader reader) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.eTag = eTag;
+            this.encoding = encoding;
+            this.reader = reader;
+        }
+
+        public long getLength() { return length; }
+        public Instant getLastModified() { return lastModified; }
+        public String getETag() { return eTag; }
+        // Content-Encoding of the bytes returned by read, null for identity
+        public String getEncoding() { return encoding; }
+
+        // Identity view of encoded content, decoded on the fly
+        StoredFile decoded(ContentCodec codec, long decodedLength) {
+            String identityETag = eTag == null ? null : eTag.replace("-" + encoding + "\"", "\"");
+            return new StoredFile(decodedLength, lastModified, identityETag, null, (start, end) ->
+                DataBufferUtils.takeUntilByteCount(
+                    DataBufferUtils.skipUntilByteCount(codec.decode(read()), start), end - start + 1));
+        }
+
+        public Flux<DataBuffer> read() {
+            return length == 0 ? Flux.empty() : reader.read(0, length - 1);
+        }
+
+        // Both offsets are inclusive, as in an HTTP byte range
+        public Flux<DataBuffer> read(long start, long end) {
+            return reader.read(start, end);
+        }
+    }
+
+    @FunctionalInterface
+    interface RangeReader {
+        Flux<DataBuffer> read(long start, long end);
+    }
+
+    /**
+     * Streams an uploaded part into storage.
+     *
+     * @param filePart Uploaded file part.
+     * @return Mono of the ProjectFile metadata referencing the stored content.
+     */
+    public Mono<Project.ProjectFile> store(FilePart filePart) {
+        String contentType = Optional.ofNullable(filePart.headers().getContentType())
+            .map(Object::toString)
+            .orElse(DEFAULT_CONTENT_TYPE);
+        return store(filePart.filename(), contentType, filePart.content());
+    }
+
+    /**
+     * Streams content into GridFS while hashing it. Content that hashes to an
+     * existing blob only adds a reference to that blob, and the copy just written
+     * is dropped again.
+     *
+     * @param filename Name of the file within the project.
+     * @param contentType Content type of the file.
+     * @param content Content to store.
+     * @return Mono of the ProjectFile metadata referencing the stored content.
+     */
+    public Mono<Project.ProjectFile> store(String filename, String contentType, Flux<DataBuffer> content) {
+        return store(filename, contentType, content, null);
+    }
+
+    /**
+     * Stores content whose SHA-256 the client announced up front. When a blob
+     * with that hash exists the content is only read and hashed, not written:
+     * once the hash matches, the file references the existing blob. Otherwise
+     * the content is stored as usual, so it must be safe to subscribe to twice.
+     *
+     * @param expectedSha256 Hex encoded SHA-256 of the content, or null if unknown.
+     * @return Mono of the ProjectFile metadata, or an ApiException when the content does not match the hash.
+     */
+    public Mono<Project.ProjectFile> store(String filename, String contentType, Flux<DataBuffer> content,
+                                           String expectedSha256) {
+        if (expectedSha256 == null) {
+            return write(filename, contentType, content);
+        }
+        String sha256 = expectedSha256.toLowerCase();
+        return mongoTemplate.exists(query(where("_id").is(sha256).and("refCount").gt(0)), Blob.class)
+            .flatMap(exists -> exists
+                ? referenceExisting(sha256, content)
+                    .map(blob -> toProjectFile(filename, contentType, blob))
+                    .switchIfEmpty(Mono.defer(() -> write(filename, contentType, content)))
+                : write(filename, contentType, content));
+    }
+
+    // Verifies the content against the hash without storing it, then adds a reference to the blob.
+    // Empty if the blob was released meanwhile.
+    private Mono<Blob> referenceExisting(String sha256, Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            MessageDigest digest = newSha256Digest();
+            return digesting(content, digest, new AtomicLong())
+                .doOnNext(DataBufferUtils::release)
+                .then(Mono.defer(() -> {
+                    if (!sha256.equals(HexFormat.of().formatHex(digest.digest()))) {
+                        return Mono.error(new ApiException(HttpStatus.BAD_REQUEST,
+                            "Content does not match the announced SHA-256", "CHECKSUM_MISMATCH"));
+                    }
+                    // A blob whose count already dropped to zero is about to be deleted and cannot be revived
+                    return mongoTemplate.findAndModify(query(where("_id").is(sha256).and("refCount").gt(0)),
+                        new Update().inc("refCount", 1), FindAndModifyOptions.options().returnNew(true), Blob.class);
+                }))
+                .doOnNext(blob -> logger.info("Duplicate content matched blob {} before upload, skipped GridFS write", sha256));
+        });
+    }
+
+    private Mono<Project.ProjectFile> write(String filename, String contentType, Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            MessageDigest digest = newSha256Digest();
+            CRC32 crc = new CRC32();
+            AtomicLong size = new AtomicLong();
+            AtomicReference<String> encoding = new AtomicReference<>();
+            Flux<DataBuffer> hashedContent = digesting(content, digest, size)
+                .doOnNext(dataBuffer -> {
+                    try (DataBuffer.ByteBufferIterator buffers = dataBuffer.readableByteBuffers()) {
+                        buffers.forEachRemaining(crc::update);
+                    }
+                });
+            // The first buffer is the sample that decides whether the file gets compressed
+            Flux<DataBuffer> storedContent = hashedContent.switchOnFirst((first, flux) -> {
+                ContentCodec codec = first.hasValue() ? selectCodec(contentType, first.get()) : null;
+                if (codec == null) {
+                    return flux;
+                }
+                encoding.set(codec.getEncoding());
+                return codec.encode(flux);
+            });
+
+            return gridFsTemplate.store(storedContent, filename, contentType)
+                .flatMap(fileId -> acquireBlob(HexFormat.of().formatHex(digest.digest()), fileId, size.get(),
+                    crc.getValue(), encoding.get()))
+                .map(blob -> toProjectFile(filename, contentType, blob));
+        });
+    }
+
+    private static Project.ProjectFile toProjectFile(String filename, String contentType, Blob blob) {
+        Project.ProjectFile projectFile = new Project.ProjectFile();
+        projectFile.setFilename(filename);
+        projectFile.setContentType(contentType);
+        projectFile.setFileId(blob.getFileId());
+        projectFile.setSha256(blob.getId());
+        projectFile.setEncoding(blob.getEncoding());
+        projectFile.setCrc32(blob.getCrc32());
+        projectFile.setSize(blob.getSize());
+        logger.info("File stored: {} (blob: {}, references: {}, size: {} bytes, encoding: {})",
+            filename, blob.getId(), blob.getRefCount(), blob.getSize(), blob.getEncoding());
+        return projectFile;
+    }
+
+    private ContentCodec selectCodec(String contentType, DataBuffer sample) {
+        ContentCodec codec = codecs.get(compressionEncoding);
+        if (codec == null || isPrecompressed(contentType) || sample.readableByteCount() < MIN_COMPRESSION_SAMPLE) {
+            return null;
+        }
+        double ratio = (double) codec.encodedSize(sample) / sample.readableByteCount();
+        return ratio <= maxCompressionRatio ? codec : null;
+    }
+
+    /**
+     * Whether content of this type is already compressed and would not shrink further.
+     */
+    public static boolean isPrecompressed(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        if (type.startsWith("image/svg")) {
+            return false;
+        }
+        return type.startsWith("image/") || type.startsWith("video/") || type.startsWith("audio/")
+            || PRECOMPRESSED_TYPES.stream().anyMatch(type::contains);
+    }
+
+    // Adds a reference to the blob for the hash, creating it with the freshly written file if needed
+    private Mono<Blob> acquireBlob(String sha256, ObjectId fileId, long size, long crc32, String encoding) {
+        Update update = new Update()
+            .inc("refCount", 1)
+            .setOnInsert("fileId", fileId.toHexString())
+            .setOnInsert("size", size)
+            .setOnInsert("crc32", crc32)
+            .setOnInsert("encoding", encoding)
+            .setOnInsert("createdAt", LocalDateTime.now().toString());
+
+        return mongoTemplate.findAndModify(query(where("_id").is(sha256)), update,
+                FindAndModifyOptions.options().upsert(true).returnNew(true), Blob.class)
+            .flatMap(blob -> {
+                if (blob.getFileId().equals(fileId.toHexString())) {
+                    return Mono.just(blob);
+                }
+                // Duplicate content, keep the existing copy only
+                return gridFsTemplate.delete(query(where("_id").is(fileId))).thenReturn(blob);
+            });
+    }
+
+    /**
+     * Drops a project file's reference to its content. The content is deleted
+     * once no project file references it any more.
+     *
+     * @param file Project file metadata.
+     * @return Mono completing once the reference has been released.
+     */
+    public Mono<Void> release(Project.ProjectFile file) {
+        if (file.getSha256() == null) {
+            // Stored before deduplication, the GridFS file is owned by this entry alone
+            return delete(file);
+        }
+        return mongoTemplate.findAndModify(query(where("_id").is(file.getSha256())),
+                new Update().inc("refCount", -1), FindAndModifyOptions.options().returnNew(true), Blob.class)
+            .filter(blob -> blob.getRefCount() <= 0)
+            // Only remove the blob if no new reference was added in the meantime
+            .flatMap(blob -> mongoTemplate.remove(
+                    query(where("_id").is(blob.getId()).and("refCount").lte(0)), Blob.class)
+                .filter(result -> result.getDeletedCount() > 0)
+                .flatMap(result -> {
+                    logger.info("Last reference to blob {} released, deleting content", blob.getId());
+                    return gridFsTemplate.delete(query(where("_id").is(new ObjectId(blob.getFileId()))));
+                }));
+    }
+
+    public Mono<Void> releaseAll(List<Project.ProjectFile> files) {
+        if (files == null) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(files).concatMap(this::release).then();
+    }
+
+    /**
+     * Stores one chunk of a resumable upload as is, without deduplication or encoding.
+     *
+     * @param sessionId Upload session the chunk belongs to.
+     * @param index Index of the chunk within the upload.
+     * @param content Chunk content.
+     * @return Mono of the stored chunk, including the SHA-256 of its content.
+     */
+    public Mono<UploadSession.Chunk> storeChunk(String sessionId, int index, Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            MessageDigest digest = newSha256Digest();
+            AtomicLong size = new AtomicLong();
+            Flux<DataBuffer> hashedContent = digesting(content, digest, size);
+            return gridFsTemplate.store(hashedContent, sessionId + "." + index, DEFAULT_CONTENT_TYPE)
+                .map(fileId -> {
+                    UploadSession.Chunk chunk = new UploadSession.Chunk();
+                    chunk.setIndex(index);
+                    chunk.setFileId(fileId.toHexString());
+                    chunk.setSize(size.get());
+                    chunk.setSha256(HexFormat.of().formatHex(digest.digest()));
+                    return chunk;
+                });
+        });
+    }
+
+    public Flux<DataBuffer> readChunk(UploadSession.Chunk chunk) {
+        if (chunk.getSize() == 0) {
+            return Flux.empty();
+        }
+        return gridFsTemplate.findOne(query(where("_id").is(new ObjectId(chunk.getFileId()))))
+            .flatMapMany(gridFsFile -> readChunks(gridFsFile, 0, gridFsFile.getLength() - 1));
+    }
+
+    public Mono<Void> deleteChunk(UploadSession.Chunk chunk) {
+        return gridFsTemplate.delete(query(where("_id").is(new ObjectId(chunk.getFileId()))));
+    }
+
+    // Counts and hashes content as it streams past
+    private static Flux<DataBuffer> digesting(Flux<DataBuffer> content, MessageDigest digest, AtomicLong size) {
+        return content.doOnNext(dataBuffer -> {
+            size.addAndGet(dataBuffer.readableByteCount());
+            try (DataBuffer.ByteBufferIterator buffers = dataBuffer.readableByteBuffers()) {
+                buffers.forEachRemaining(digest::update);
+            }
+        });
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Streams the decoded content of a project file. Files uploaded before GridFS
+     * storage are served from their inline data.
+     *
+     * @param file Project file metadata.
+     * @return Flux of DataBuffers with the file content.
+     */
+    public Flux<DataBuffer> read(Project.ProjectFile file) {
+        return open(file).flatMapMany(StoredFile::read);
+    }
+
+    /**
+     * Resolves the decoded content of a project file without reading it.
+     */
+    public Mono<StoredFile> open(Project.ProjectFile file) {
+        return open(file, List.of());
+    }
+
+    /**
+     * Resolves the stored content of a project file without reading it. Encoded
+     * content is handed out as stored when the caller accepts its encoding, and
+     * decoded on the fly otherwise.
+     *
+     * @param file Project file metadata.
+     * @param acceptedEncodings Content encodings the caller can handle.
+     * @return Mono of the StoredFile, empty if the content no longer exists.
+     */
+    public Mono<StoredFile> open(Project.ProjectFile file, Collection<String> acceptedEncodings) {
+        if (file.getFileId() == null) {
+            byte[] data = file.getData();
+            if (data == null) {
+                return Mono.empty();
+            }
+            return Mono.just(new StoredFile(data.length, null, null, null, (start, end) ->
+                Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(
+                    ByteBuffer.wrap(data, (int) start, (int) (end - start + 1))))));
+        }
+        ContentCodec codec = file.getEncoding() == null ? null : codecs.get(file.getEncoding());
+        if (file.getEncoding() != null && codec == null) {
+            return Mono.error(new IllegalStateException("No codec for encoding " + file.getEncoding()));
+        }
+        // Stored content never changes for a given hash or id, so either is a strong validator
+        String validator = file.getSha256() != null ? file.getSha256() : file.getFileId();
+        String eTag = "\"" + validator + (codec == null ? "" : "-" + codec.getEncoding()) + "\"";
+        return gridFsTemplate.findOne(query(where("_id").is(new ObjectId(file.getFileId()))))
+            .map(gridFsFile -> new StoredFile(
+                gridFsFile.getLength(),
+                gridFsFile.getUploadDate().toInstant(),
+                eTag,
+                file.getEncoding(),
+                (start, end) -> readChunks(gridFsFile, start, end)))
+            .map(storedFile -> codec == null || acceptedEncodings.contains(codec.getEncoding())
+                ? storedFile
+                : storedFile.decoded(codec, file.getSize()));
+    }
+
+    /**
+     * Streams a byte range straight from the chunks collection, only touching the
+     * chunks that overlap the range.
+     */
+    private Flux<DataBuffer> readChunks(GridFSFile gridFsFile, long start, long end) {
+        int chunkSize = gridFsFile.getChunkSize();
+        Query chunkQuery = query(where("files_id").is(gridFsFile.getObjectId())
+                .and("n").gte((int) (start / chunkSize)).lte((int) (end / chunkSize)))
+            .with(Sort.by("n"))
+            .cursorBatchSize(CHUNK_BATCH_SIZE);
+
+        return mongoTemplate.find(chunkQuery, Document.class, bucket + ".chunks")
+            .map(chunk -> {
+                byte[] data = chunk.get("data", Binary.class).getData();
+                long chunkStart = (long) chunk.getInteger("n") * chunkSize;
+                int from = (int) Math.max(0, start - chunkStart);
+                int to = (int) Math.min(data.length, end - chunkStart + 1);
+                return DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(data, from, to - from));
+            });
+    }
+
+    /**
+     * Reads a whole file into memory. Only meant for small files such as READMEs.
+     *
+     * @param file Project file metadata.
+     * @return Mono of the file content.
+     */
+    public Mono<byte[]> readAllBytes(Project.ProjectFile file) {
+        return DataBufferUtils.join(read(file))
+            .map(dataBuffer -> {
+                byte[] bytes = new byte[dataBuffer.readableByteCount()];
+                dataBuffer.read(bytes);
+                DataBufferUtils.release(dataBuffer);
+                return bytes;
+            });
+    }
+
+    private Mono<Void> delete(Project.ProjectFile file) {
+        if (file.getFileId() == null) {
+            return Mono.empty();
+        }
+        return gridFsTemplate.delete(query(where("_id").is(new ObjectId(file.getFileId()))));
+    }
+}
@@ -0,0 +1,532 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.dto.ProjectSearchResult;
+import com.example.jwtdemo.model.Project;
+import com.example.jwtdemo.model.User;
+import com.example.jwtdemo.repository.ProjectRepository;
+import com.example.jwtdemo.repository.UserRepository;
+import com.example.jwtdemo.util.SuggestionTrie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over project names, descriptions and technologies,
+ * ranked with BM25. Every project gets a dense int ordinal and postings are kept
+ * sorted by ordinal, so a query only touches the postings of its own terms.
+ * Technologies are also kept as facets, one compressed bitmap of ordinals per
+ * technology, so filters are bitmap unions or intersections and facet counts
+ * are intersection cardinalities.
+ * Project names, technologies and developer names also feed a prefix trie for
+ * typeahead, ranked by how many projects share each suggestion.
+ * The index holds project summaries and answers searches without going to Mongo;
+ * it is loaded once at startup and then kept current by {@link ProjectService}.
+ */
+@Component
+public class ProjectSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ProjectSearchIndex.class);
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}+#]+");
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // Field boosts, applied as repeated term occurrences
+    private static final int NAME_WEIGHT = 3;
+    private static final int TECHNOLOGY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int MAX_FACETS = 50;
+    public static final int MAX_SUGGESTIONS = 10;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<IndexedProject> documents = new ArrayList<>();
+    // Document lengths by ordinal, read in the scoring loop
+    private int[] lengths = new int[1024];
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    // Ordinals of the projects using each technology, keyed by lowercase name
+    private final Map<String, RoaringBitmap> technologyOrdinals = new HashMap<>();
+    // Spelling under which each technology was first indexed, for facet labels
+    private final Map<String, String> technologyLabels = new HashMap<>();
+    private final RoaringBitmap liveOrdinals = new RoaringBitmap();
+    private final SuggestionTrie suggestions = new SuggestionTrie(MAX_SUGGESTIONS);
+    private long totalLength;
+    private volatile boolean ready;
+    // Projects indexed or removed by updates while the initial load runs, null once it is done
+    private Set<String> changedDuringLoad;
+
+    private static class IndexedProject {
+        final Project project;
+        final String developerName;
+        final Map<String, Integer> termFrequencies;
+        final Set<String> technologies;
+        final int length;
+
+        IndexedProject(Project project, String developerName) {
+            this.project = project;
+            this.developerName = developerName;
+            this.termFrequencies = new HashMap<>();
+            addTerms(termFrequencies, project.getName(), NAME_WEIGHT);
+            addTerms(termFrequencies, project.getDescription(), DESCRIPTION_WEIGHT);
+            this.technologies = new HashSet<>();
+            if (project.getTechnologies() != null) {
+                for (String technology : project.getTechnologies()) {
+                    if (technology != null && !technology.isBlank()) {
+                        technologies.add(Project.technologyKey(technology));
+                        addTerms(termFrequencies, technology, TECHNOLOGY_WEIGHT);
+                    }
+                }
+            }
+            this.length = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+
+    // Ordinals and term frequencies in parallel arrays, sorted by ordinal
+    private static class Postings {
+        int[] ordinals = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+
+        void put(int ordinal, int frequency) {
+            int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (position >= 0) {
+                frequencies[position] = frequency;
+                return;
+            }
+            position = -position - 1;
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+            System.arraycopy(frequencies, position, frequencies, position + 1, size - position);
+            ordinals[position] = ordinal;
+            frequencies[position] = frequency;
+            size++;
+        }
+
+        void remove(int ordinal) {
+            int position = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+            System.arraycopy(frequencies, position + 1, frequencies, position, size - position - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Loads all project summaries once the application is up. Until then
+     * {@link #isReady()} is false and callers fall back to querying Mongo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        setLoading(true);
+        userRepository.findAll()
+            .filter(user -> user.getEmail() != null && user.getName() != null)
+            .collectMap(User::getEmail, User::getName)
+            .flatMapMany(developerNames -> projectRepository.findAllSummaries()
+                .doOnNext(project -> index(project, developerNames.get(project.getUserId()), true)))
+            .count()
+            .subscribe(count -> {
+                setLoading(false);
+                ready = true;
+                logger.info("Project search index loaded with {} projects", count);
+            }, ex -> {
+                setLoading(false);
+                logger.error("Failed to load project search index: {}", ex.getMessage(), ex);
+            });
+    }
+
+    private void setLoading(boolean loading) {
+        lock.writeLock().lock();
+        try {
+            changedDuringLoad = loading ? new HashSet<>() : null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Adds or replaces a project. The project must be a summary, since the index
+     * keeps it to serve search results.
+     *
+     * @param project Project summary.
+     * @param developerName Name of the project's owner for suggestions, may be null.
+     */
+    public void index(Project project, String developerName) {
+        index(project, developerName, false);
+    }
+
+    // A loaded summary may predate an update made since the load started, the update wins
+    private void index(Project project, String developerName, boolean fromLoad) {
+        IndexedProject document = new IndexedProject(project, developerName);
+        lock.writeLock().lock();
+        try {
+            if (changedDuringLoad != null) {
+                if (fromLoad && changedDuringLoad.contains(project.getId())) {
+                    return;
+                }
+                if (!fromLoad) {
+                    changedDuringLoad.add(project.getId());
+                }
+            }
+            Integer ordinal = ordinals.get(project.getId());
+            if (ordinal != null) {
+                unlink(ordinal);
+            } else {
+                ordinal = freeOrdinals.isEmpty() ? documents.size() : freeOrdinals.pop();
+                ordinals.put(project.getId(), ordinal);
+                if (ordinal == documents.size()) {
+                    documents.add(null);
+                }
+            }
+            documents.set(ordinal, document);
+            if (ordinal >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, Math.max(lengths.length * 2, ordinal + 1));
+            }
+            lengths[ordinal] = document.length;
+            for (Map.Entry<String, Integer> term : document.termFrequencies.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), key -> new Postings()).put(ordinal.intValue(), term.getValue());
+            }
+            for (String technology : project.getTechnologies() == null ? new String[0] : project.getTechnologies()) {
+                if (technology != null && !technology.isBlank()) {
+                    String key = Project.technologyKey(technology);
+                    technologyOrdinals.computeIfAbsent(key, k -> new RoaringBitmap()).add(ordinal.intValue());
+                    technologyLabels.putIfAbsent(key, technology);
+                }
+            }
+            liveOrdinals.add(ordinal.intValue());
+            suggestions.add(project.getName(), "project");
+            for (String technology : document.technologies) {
+                suggestions.add(technologyLabels.get(technology), "technology");
+            }
+            suggestions.add(developerName, "developer");
+            totalLength += document.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reloads a project's summary from Mongo and indexes it. Failures only leave
+     * the entry stale, so they are logged rather than propagated.
+     */
+    public Mono<Void> refresh(String projectId) {
+        return projectRepository.findSummaryById(projectId)
+            .flatMap(project -> userRepository.findByEmail(project.getUserId())
+                .map(User::getName)
+                .defaultIfEmpty("")
+                .doOnNext(developerName -> index(project, developerName)))
+            .then()
+            .onErrorResume(ex -> {
+                logger.warn("Failed to refresh project {} in search index: {}", projectId, ex.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    public void remove(String projectId) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringLoad != null) {
+                changedDuringLoad.add(projectId);
+            }
+            Integer ordinal = ordinals.remove(projectId);
+            if (ordinal != null) {
+                unlink(ordinal);
+                documents.set(ordinal, null);
+                freeOrdinals.push(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drops a document's postings, the caller holds the write lock
+    private void unlink(int ordinal) {
+        IndexedProject document = documents.get(ordinal);
+        for (String term : document.termFrequencies.keySet()) {
+            Postings termPostings = postings.get(term);
+            termPostings.remove(ordinal);
+            if (termPostings.size == 0) {
+                postings.remove(term);
+            }
+        }
+        for (String technology : document.technologies) {
+            RoaringBitmap projects = technologyOrdinals.get(technology);
+            projects.remove(ordinal);
+            if (projects.isEmpty()) {
+                technologyOrdinals.remove(technology);
+                technologyLabels.remove(technology);
+            }
+        }
+        liveOrdinals.remove(ordinal);
+        suggestions.remove(document.project.getName(), "project");
+        for (String technology : document.technologies) {
+            suggestions.remove(technologyLabels.getOrDefault(technology, technology), "technology");
+        }
+        suggestions.remove(document.developerName, "developer");
+        totalLength -= document.length;
+    }
+
+    /**
+     * Ranks projects against the query with BM25. Without query terms every
+     * project matching the technology filter is returned in index order. The
+     * result carries per-technology counts over all matches, not just the page.
+     *
+     * @param query Free text, may be empty.
+     * @param technologies Technologies to filter on, may be empty.
+     * @param matchAll Whether a project needs all the technologies rather than any of them.
+     * @param page Zero-based page number.
+     * @param size Page size.
+     * @return The requested page, the total number of matches and the technology counts.
+     */
+    public ProjectSearchResult search(String query, Collection<String> technologies, boolean matchAll, int page, int size) {
+        Set<String> terms = tokenize(query);
+        Set<String> technologyFilter = new HashSet<>();
+        if (technologies != null) {
+            technologies.stream()
+                .map(Project::technologyKey)
+                .filter(Objects::nonNull)
+                .forEach(technologyFilter::add);
+        }
+        int wanted = (int) Math.min((long) (page + 1) * size, Integer.MAX_VALUE);
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap allowed = technologyFilter.isEmpty() ? liveOrdinals : filter(technologyFilter, matchAll);
+            List<Project> items = new ArrayList<>();
+            if (terms.isEmpty()) {
+                IntIterator ordinalIterator = allowed.getIntIterator();
+                for (long skip = (long) page * size; skip > 0 && ordinalIterator.hasNext(); skip--) {
+                    ordinalIterator.next();
+                }
+                while (items.size() < size && ordinalIterator.hasNext()) {
+                    items.add(documents.get(ordinalIterator.next()).project);
+                }
+                return result(items, allowed, page, size);
+            }
+
+            int documentCount = ordinals.size();
+            float averageLength = documentCount == 0 ? 1 : (float) totalLength / documentCount;
+            List<Postings> queryPostings = new ArrayList<>(terms.size());
+            List<Double> idfs = new ArrayList<>(terms.size());
+            int postingCount = 0;
+            for (String term : terms) {
+                Postings termPostings = postings.get(term);
+                if (termPostings != null) {
+                    queryPostings.add(termPostings);
+                    idfs.add(Math.log(1 + (documentCount - termPostings.size + 0.5) / (termPostings.size + 0.5)));
+                    postingCount += termPostings.size;
+                }
+            }
+
+            /*
+             * Merges the postings of the query terms by ordinal, so every candidate is
+             * scored once and only candidates take space, never the whole corpus.
+             * Candidates come out in ordinal order, so comparing candidate positions
+             * breaks ties the same way comparing ordinals does.
+             */
+            int[] candidates = new int[postingCount];
+            float[] scores = new float[postingCount];
+            int candidateCount = 0;
+            int[] cursors = new int[queryPostings.size()];
+            while (true) {
+                int ordinal = Integer.MAX_VALUE;
+                for (int t = 0; t < cursors.length; t++) {
+                    Postings termPostings = queryPostings.get(t);
+                    if (cursors[t] < termPostings.size) {
+                        ordinal = Math.min(ordinal, termPostings.ordinals[cursors[t]]);
+                    }
+                }
+                if (ordinal == Integer.MAX_VALUE) {
+                    break;
+                }
+                float lengthNorm = K1 * (1 - B + B * lengths[ordinal] / averageLength);
+                float score = 0;
+                for (int t = 0; t < cursors.length; t++) {
+                    Postings termPostings = queryPostings.get(t);
+                    if (cursors[t] < termPostings.size && termPostings.ordinals[cursors[t]] == ordinal) {
+                        int frequency = termPostings.frequencies[cursors[t]++];
+                        score += (float) (idfs.get(t) * frequency * (K1 + 1) / (frequency + lengthNorm));
+                    }
+                }
+                if (allowed == liveOrdinals || allowed.contains(ordinal)) {
+                    candidates[candidateCount] = ordinal;
+                    scores[candidateCount++] = score;
+                }
+            }
+
+            // Bounded min-heap of candidate positions keeps only the best page+1 pages worth of hits
+            int[] heap = new int[Math.min(wanted, candidateCount)];
+            int heapSize = 0;
+            for (int i = 0; i < candidateCount; i++) {
+                if (heapSize < heap.length) {
+                    heap[heapSize] = i;
+                    siftUp(heap, heapSize++, scores);
+                } else if (heapSize > 0 && compareHits(scores, i, heap[0]) > 0) {
+                    heap[0] = i;
+                    siftDown(heap, heapSize, scores);
+                }
+            }
+            // Draining the min-heap yields hits from worst to best
+            int[] ranked = new int[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                ranked[i] = heap[0];
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, scores);
+            }
+            for (int i = (int) Math.min((long) page * size, ranked.length); i < ranked.length; i++) {
+                items.add(documents.get(candidates[ranked[i]]).project);
+            }
+            RoaringBitmap hits = new RoaringBitmap();
+            hits.addN(candidates, 0, candidateCount);
+            return result(items, hits, page, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the most popular project names, technologies and developer names
+     * with a word starting with the prefix.
+     */
+    public List<SuggestionTrie.Suggestion> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return suggestions.suggest(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Union or intersection of the technology bitmaps, the caller holds the read lock
+    private RoaringBitmap filter(Set<String> technologyFilter, boolean matchAll) {
+        RoaringBitmap allowed = null;
+        for (String technology : technologyFilter) {
+            RoaringBitmap projects = technologyOrdinals.getOrDefault(technology, new RoaringBitmap());
+            if (allowed == null) {
+                allowed = projects.clone();
+            } else if (matchAll) {
+                allowed.and(projects);
+            } else {
+                allowed.or(projects);
+            }
+        }
+        return allowed;
+    }
+
+    // Counts matches per technology, most frequent first, the caller holds the read lock
+    private ProjectSearchResult result(List<Project> items, RoaringBitmap matches, int page, int size) {
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        for (Map.Entry<String, RoaringBitmap> technology : technologyOrdinals.entrySet()) {
+            int count = RoaringBitmap.andCardinality(matches, technology.getValue());
+            if (count > 0) {
+                counts.add(Map.entry(technologyLabels.get(technology.getKey()), count));
+            }
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Integer> technologyCounts = new LinkedHashMap<>();
+        counts.stream().limit(MAX_FACETS).forEach(entry -> technologyCounts.put(entry.getKey(), entry.getValue()));
+
+        ProjectSearchResult result = new ProjectSearchResult(items, matches.getLongCardinality(), page, size);
+        result.setTechnologyCounts(technologyCounts);
+        return result;
+    }
+
+    private static void siftUp(int[] heap, int position, float[] scores) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (compareHits(scores, heap[position], heap[parent]) >= 0) {
+                return;
+            }
+            swap(heap, position, parent);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int position = 0;
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && compareHits(scores, heap[left], heap[smallest]) < 0) smallest = left;
+            if (right < size && compareHits(scores, heap[right], heap[smallest]) < 0) smallest = right;
+            if (smallest == position) {
+                return;
+            }
+            swap(heap, position, smallest);
+            position = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    // Lower score first, the earlier position (older ordinal) wins ties
+    private static int compareHits(float[] scores, int a, int b) {
+        int byScore = Float.compare(scores[a], scores[b]);
+        return byScore != 0 ? byScore : Integer.compare(b, a);
+    }
+
+    private static void addTerms(Map<String, Integer> termFrequencies, String text, int weight) {
+        if (text == null) {
+            return;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                termFrequencies.merge(token, weight, Integer::sum);
+            }
+        }
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text != null) {
+            for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+        return tokens;
+    }
+}
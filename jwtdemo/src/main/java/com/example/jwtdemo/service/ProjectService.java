@@ -1,16 +1,40 @@
 package com.example.jwtdemo.service;
 
+import com.example.jwtdemo.dto.ProjectSearchResult;
 import com.example.jwtdemo.model.Project;
+import com.example.jwtdemo.model.ProjectStatus;
 import com.example.jwtdemo.repository.ProjectRepository;
+import com.example.jwtdemo.util.ProjectQueryBuilder;
+import com.mongodb.MongoServerException;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Service
 public class ProjectService {
+    private static final Logger logger = LoggerFactory.getLogger(ProjectService.class);
+    private static final int MAX_TECHNOLOGY_COUNTS = 50;
 
     @Autowired
     private ProjectRepository projectRepository;
@@ -19,18 +43,58 @@ public class ProjectService {
     @Autowired
     private UserActivityService userActivityService;
 
+    @Autowired
+    private ProjectFileStorageService fileStorageService;
+
+    @Autowired
+    private ProjectSearchIndex searchIndex;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    /**
+     * Gives projects saved before technology keys existed their keys, computed
+     * like {@link Project#technologyKey}. Searches that run in MongoDB filter
+     * on them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillTechnologyKeys() {
+        Document keys = new Document("$setUnion", List.of(
+            new Document("$filter", new Document("input", new Document("$map", new Document("input", "$technologies")
+                    .append("in", new Document("$toLower", new Document("$trim", new Document("input", "$$this"))))))
+                .append("cond", new Document("$ne", List.of("$$this", "")))),
+            List.of()));
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("technologies").type(4).and("technologyKeys").is(null)),
+                AggregationUpdate.from(List.of(context -> new Document("$set", new Document("technologyKeys", keys)))),
+                Project.class)
+            .subscribe(
+                result -> {
+                    if (result.getModifiedCount() > 0) {
+                        logger.info("Added technology keys to {} projects", result.getModifiedCount());
+                    }
+                },
+                ex -> logger.error("Failed to add technology keys to projects: {}", ex.getMessage(), ex));
+    }
+
     public Mono<Project> createProject(Project project) {
         project.setCreatedAt(LocalDateTime.now().toString());
         project.setUpdatedAt(LocalDateTime.now().toString());
-        return projectRepository.save(project);
+        return projectRepository.save(project)
+            .flatMap(savedProject -> searchIndex.refresh(savedProject.getId()).thenReturn(savedProject));
     }
 
-    public Mono<Project> updateProject(String id, Project updatedProject) {
+    public Mono<Project> updateProject(String id, Project updatedProject, String userId) {
         return projectRepository.findById(id)
             .flatMap(existingProject -> {
-                updatedProject.setId(id);
-                updatedProject.setUpdatedAt(LocalDateTime.now().toString());
+                if (!existingProject.getUserId().equals(userId)) {
+                    return Mono.error(new RuntimeException("You can only update your own projects"));
+                }
+                List<Project.ProjectFile> droppedFiles = applyUpdate(existingProject, updatedProject);
+                existingProject.setUpdatedAt(LocalDateTime.now().toString());
                 return projectRepository.save(existingProject)
+                    .flatMap(savedProject -> releaseFiles(droppedFiles).thenReturn(savedProject))
+                    .flatMap(savedProject -> searchIndex.refresh(savedProject.getId()).thenReturn(savedProject))
                     .flatMap(savedProject -> userActivityService.logActivity(
                         savedProject.getUserId(),
                         savedProject.getId(),
@@ -40,44 +104,226 @@ public class ProjectService {
             });
     }
 
+    public Mono<Void> deleteProject(String id, String userId) {
+        return projectRepository.findById(id)
+            .switchIfEmpty(Mono.error(new RuntimeException("Project not found")))
+            .flatMap(project -> {
+                if (!project.getUserId().equals(userId)) {
+                    return Mono.error(new RuntimeException("You can only delete your own projects"));
+                }
+                return projectRepository.delete(project)
+                    .doOnSuccess(deleted -> searchIndex.remove(id))
+                    .then(releaseFiles(project.getFiles()))
+                    .then(userActivityService.logActivity(userId, id, "DELETED_PROJECT", "Project deleted"))
+                    .then();
+            });
+    }
+
+    /**
+     * Adds a stored file to a project, replacing any file with the same name.
+     *
+     * @param projectId Project to attach the file to.
+     * @param file Stored file metadata.
+     * @return Mono of the updated project.
+     */
+    public Mono<Project> attachFile(String projectId, Project.ProjectFile file) {
+        return projectRepository.findById(projectId)
+            .switchIfEmpty(Mono.error(new RuntimeException("Project not found")))
+            .flatMap(project -> {
+                List<Project.ProjectFile> files = project.getFiles() == null
+                    ? new ArrayList<>() : new ArrayList<>(project.getFiles());
+                List<Project.ProjectFile> replacedFiles = files.stream()
+                    .filter(existing -> existing.getFilename().equals(file.getFilename()))
+                    .toList();
+                files.removeAll(replacedFiles);
+                files.add(file);
+                project.setFiles(files);
+                project.setUpdatedAt(LocalDateTime.now().toString());
+                return projectRepository.save(project)
+                    .flatMap(savedProject -> releaseFiles(replacedFiles).thenReturn(savedProject))
+                    .flatMap(savedProject -> searchIndex.refresh(savedProject.getId()).thenReturn(savedProject))
+                    .flatMap(savedProject -> userActivityService.logFileUpload(
+                        savedProject.getUserId(),
+                        savedProject.getId(),
+                        file.getFilename()
+                    ).thenReturn(savedProject));
+            });
+    }
+
+    /**
+     * Copies the editable fields onto the stored project. Files can be renamed or
+     * removed but only ever point at content that was uploaded to this project.
+     *
+     * @return Files that are no longer part of the project.
+     */
+    private List<Project.ProjectFile> applyUpdate(Project existingProject, Project updatedProject) {
+        if (updatedProject.getName() != null) existingProject.setName(updatedProject.getName());
+        if (updatedProject.getDescription() != null) existingProject.setDescription(updatedProject.getDescription());
+        if (updatedProject.getVisibility() != null) existingProject.setVisibility(updatedProject.getVisibility());
+        if (updatedProject.getGitignoreTemplate() != null) existingProject.setGitignoreTemplate(updatedProject.getGitignoreTemplate());
+        if (updatedProject.getLicense() != null) existingProject.setLicense(updatedProject.getLicense());
+        if (updatedProject.getTechnologies() != null) existingProject.setTechnologies(updatedProject.getTechnologies());
+        if (updatedProject.getStatus() != null) existingProject.setStatus(updatedProject.getStatus());
+
+        List<Project.ProjectFile> existingFiles = existingProject.getFiles() == null
+            ? new ArrayList<>() : existingProject.getFiles();
+        if (updatedProject.getFiles() == null) {
+            return List.of();
+        }
+
+        List<Project.ProjectFile> keptFiles = new ArrayList<>();
+        for (Project.ProjectFile requested : updatedProject.getFiles()) {
+            existingFiles.stream()
+                .filter(existing -> !keptFiles.contains(existing))
+                .filter(existing -> existing.getFileId() != null
+                    ? existing.getFileId().equals(requested.getFileId())
+                    : existing.getFilename().equals(requested.getFilename()))
+                .findFirst()
+                .ifPresent(existing -> {
+                    if (requested.getFilename() != null) existing.setFilename(requested.getFilename());
+                    keptFiles.add(existing);
+                });
+        }
+        List<Project.ProjectFile> droppedFiles = new ArrayList<>(existingFiles);
+        droppedFiles.removeAll(keptFiles);
+        existingProject.setFiles(keptFiles);
+        return droppedFiles;
+    }
+
+    // Failing to release a reference leaves an orphaned blob but must not fail the request
+    private Mono<Void> releaseFiles(List<Project.ProjectFile> files) {
+        return fileStorageService.releaseAll(files)
+            .onErrorResume(ex -> {
+                logger.warn("Failed to release project files: {}", ex.getMessage());
+                return Mono.empty();
+            });
+    }
+
     public Flux<Project> getAllProjects() {
-        return projectRepository.findAll();
+        return projectRepository.findAllSummaries();
+    }
+
+    /**
+     * Lists project summaries newest first, continuing after the cursor.
+     *
+     * @param cursor Opaque cursor from {@link #cursorOf(Project)}, null for the first page.
+     * @param pageable Page size, or unpaged to stream everything after the cursor.
+     * @return Flux of project summaries in order.
+     */
+    public Flux<Project> getProjects(String cursor, Pageable pageable) {
+        if (cursor == null || cursor.isEmpty()) {
+            return projectRepository.findSummariesNewestFirst(pageable);
+        }
+        String[] position;
+        try {
+            position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+        } catch (IllegalArgumentException ex) {
+            return Flux.error(new IllegalArgumentException("Invalid cursor"));
+        }
+        if (position.length != 2 || !ObjectId.isValid(position[1])) {
+            return Flux.error(new IllegalArgumentException("Invalid cursor"));
+        }
+        return projectRepository.findSummariesNewestFirstAfter(position[0], new ObjectId(position[1]), pageable);
+    }
+
+    /**
+     * Cursor pointing just after the given project in the newest first order.
+     */
+    public static String cursorOf(Project project) {
+        String position = project.getCreatedAt() + "|" + project.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
     }
 
     public Flux<Project> getUserProjects(String userId) {
-        return projectRepository.findByUserId(userId);
+        return projectRepository.findSummariesByUserId(userId);
     }
 
-    public Flux<Project> searchProjects(String[] technologies, String keyword) {
-        if (technologies == null || technologies.length == 0) {
-            return projectRepository.findAll()
-                .filter(project -> keyword == null || keyword.isEmpty() ||
-                    project.getName().toLowerCase().contains(keyword.toLowerCase()) ||
-                    project.getDescription().toLowerCase().contains(keyword.toLowerCase()));
+    /**
+     * Searches projects by free text, technologies, status, visibility and
+     * creation date. Text and technology searches are served by the in-memory
+     * search index; other filters, or searches while the index is still loading,
+     * run as one Mongo query.
+     *
+     * @param keyword Free text ranked against name, description and technologies.
+     * @param technologies Technologies to filter on.
+     * @param matchAll Whether a project needs all the technologies rather than any of them.
+     * @param status Status to filter on, may be null.
+     * @param visibility Visibility to filter on, may be null.
+     * @param createdFrom Earliest creation time, inclusive, may be null.
+     * @param createdTo Latest creation time, exclusive, may be null.
+     * @param page Zero-based page number.
+     * @param size Page size.
+     * @return Mono of the requested page of results with technology counts.
+     */
+    public Mono<ProjectSearchResult> searchProjects(String keyword, String[] technologies, boolean matchAll,
+                                                    ProjectStatus status, String visibility,
+                                                    LocalDateTime createdFrom, LocalDateTime createdTo,
+                                                    int page, int size) {
+        List<String> technologyList = technologies == null ? List.of() : Arrays.asList(technologies);
+        boolean indexable = status == null && (visibility == null || visibility.isBlank())
+            && createdFrom == null && createdTo == null;
+        if (indexable && searchIndex.isReady()) {
+            return Mono.fromSupplier(() -> searchIndex.search(keyword, technologyList, matchAll, page, size));
         }
-        
-        return projectRepository.findAll()
-            .filter(project -> {
-                boolean matchesTech = Arrays.stream(project.getTechnologies())
-                    .anyMatch(tech -> Arrays.asList(technologies).contains(tech));
-                boolean matchesKeyword = keyword == null || keyword.isEmpty() ||
-                    project.getName().toLowerCase().contains(keyword.toLowerCase()) ||
-                    project.getDescription().toLowerCase().contains(keyword.toLowerCase());
-                return matchesTech && matchesKeyword;
+
+        Function<Boolean, ProjectQueryBuilder> queryBuilder = useTextIndex -> new ProjectQueryBuilder()
+            .keyword(keyword, useTextIndex)
+            .technologies(technologyList, matchAll)
+            .status(status)
+            .visibility(visibility)
+            .createdBetween(createdFrom, createdTo)
+            .page(page, size);
+        return searchInMongo(queryBuilder.apply(true), page, size)
+            .onErrorResume(this::isMissingTextIndex, ex -> {
+                logger.warn("Projects text index not available, searching without it");
+                return searchInMongo(queryBuilder.apply(false), page, size);
+            });
+    }
+
+    private Mono<ProjectSearchResult> searchInMongo(ProjectQueryBuilder queryBuilder, int page, int size) {
+        Mono<List<Project>> items = mongoTemplate.find(queryBuilder.build(), Project.class).collectList();
+        Mono<Long> total = mongoTemplate.count(queryBuilder.buildCount(), Project.class);
+        Mono<Map<String, Integer>> technologyCounts = mongoTemplate
+            .aggregate(queryBuilder.technologyCounts(MAX_TECHNOLOGY_COUNTS), Project.class, Document.class)
+            .filter(count -> count.getString("label") != null)
+            .collect(LinkedHashMap::new, (counts, count) -> counts.put(count.getString("label"), count.getInteger("count")));
+        return Mono.zip(items, total, technologyCounts)
+            .map(tuple -> {
+                ProjectSearchResult result = new ProjectSearchResult(tuple.getT1(), tuple.getT2(), page, size);
+                result.setTechnologyCounts(tuple.getT3());
+                return result;
             });
     }
 
+    // $text fails with IndexNotFound until the text index exists
+    private boolean isMissingTextIndex(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoServerException serverException && serverException.getCode() == 27) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public Mono<Project> purchaseProject(String projectId, String userId) {
         return projectRepository.findById(projectId)
             .flatMap(project -> {
                 project.setUserId(userId);
                 project.setUpdatedAt(LocalDateTime.now().toString());
-                return projectRepository.save(project);
+                return projectRepository.save(project)
+                    .flatMap(savedProject -> searchIndex.refresh(savedProject.getId()).thenReturn(savedProject));
             });
     }
 
+    public Mono<Project.ProjectFile> getProjectFile(String projectId, String filename) {
+        return projectRepository.findByIdWithFile(projectId, filename)
+            .flatMap(project -> project.getFiles() == null || project.getFiles().isEmpty()
+                ? Mono.empty()
+                : Mono.just(project.getFiles().get(0)));
+    }
+
     public Mono<Project> getProjectById(String id) {
-        return projectRepository.findById(id)
+        return projectRepository.findSummaryById(id)
             .switchIfEmpty(Mono.error(new RuntimeException("Project not found")));
     }
 }
@@ -1,45 +1,157 @@
 package com.example.jwtdemo.service;
 
-import com.example.jwtdemo.exception.ApiException;
+import com.example.jwtdemo.config.RateLimitProperties;
+import com.example.jwtdemo.exception.RateLimitExceededException;
+import com.example.jwtdemo.util.LocalTtlStore;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
-import org.springframework.http.HttpStatus;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
+/**
+ * Sliding window rate limits kept in Redis. Each check is a single Lua
+ * script call, so concurrent attempts cannot both pass on a stale count, and
+ * an attempt only counts against the limit for one window after it was made.
+ * While Redis is unavailable each instance limits on its own, which lets a
+ * caller spread over instances through more often; the attempts are added to
+ * the Redis windows once it is reachable again. Local attempts are timed with
+ * this instance's clock while the script uses Redis TIME, so they are shifted
+ * by the offset between the two clocks when they are added.
+ */
 @Service
 public class RateLimitService {
-    private static final String RATE_LIMIT_PREFIX = "rate:";
-    private static final int MAX_ATTEMPTS = 5;
-    private static final int BLOCK_DURATION_SECONDS = 3600; // 1 hour
-    
+    // Sorted sets of attempt timestamps, distinct from the counters the limiter used to keep under "rate:"
+    private static final String RATE_LIMIT_PREFIX = "ratelimit:";
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final RedisScript<List<Long>> SLIDING_WINDOW_SCRIPT = (RedisScript) RedisScript.of(
+        new ClassPathResource("scripts/sliding_window_rate_limit.lua"), List.class);
+
     @Autowired
     private ReactiveRedisTemplate<String, String> redisTemplate;
 
-    public Mono<Void> checkRateLimit(String key, String action) {
-        String rateKey = RATE_LIMIT_PREFIX + action + ":" + key;
-        
-        return redisTemplate.opsForValue().get(rateKey)
-                .defaultIfEmpty("0")
-                .flatMap(attempts -> {
-                    int currentAttempts = Integer.parseInt(attempts);
-                    if (currentAttempts >= MAX_ATTEMPTS) {
-                        return Mono.error(new ApiException(
-                            HttpStatus.TOO_MANY_REQUESTS,
-                            "Too many attempts. Please try again later.",
-                            "RATE_LIMIT_EXCEEDED"
-                        ));
-                    }
-                    
-                    return redisTemplate.opsForValue()
-                            .increment(rateKey)
-                            .then(redisTemplate.expire(rateKey, Duration.ofSeconds(BLOCK_DURATION_SECONDS)))
-                            .then();
-                });
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Value("${redis.fallback.max-entries:100000}")
+    private long fallbackMaxEntries;
+
+    // Attempt times in epoch millis, oldest first, for windows kept locally during an outage
+    private LocalTtlStore<long[]> localWindows;
+
+    @PostConstruct
+    public void init() {
+        this.localWindows = new LocalTtlStore<>(fallbackMaxEntries);
+        redisGuard.onRecovery(this::reconcile);
+    }
+
+    /**
+     * Outcome of an allowed attempt.
+     *
+     * @param limit Attempts allowed per window.
+     * @param remaining Attempts left in the current window.
+     */
+    public record RateLimit(int limit, long remaining) {}
+
+    /**
+     * Records an attempt at an action.
+     *
+     * @param key Caller the limit applies to, e.g. an email or user ID.
+     * @param action Action name, selects the configured limit.
+     * @return Mono of the remaining allowance, or a RateLimitExceededException
+     *         carrying the time until the next attempt is allowed.
+     */
+    public Mono<RateLimit> checkRateLimit(String key, String action) {
+        RateLimitProperties.Limit limit = rateLimitProperties.forAction(action);
+        List<String> args = List.of(
+            Long.toString(limit.getWindow().toMillis()),
+            Integer.toString(limit.getLimit()),
+            UUID.randomUUID().toString());
+
+        String rateKey = rateKey(key, action);
+        return redisGuard.call(
+                redisTemplate.execute(SLIDING_WINDOW_SCRIPT, List.of(rateKey), args).next(),
+                () -> Mono.fromSupplier(() -> checkLocally(rateKey, limit)))
+                .flatMap(result -> result.get(0) == 1L
+                    ? Mono.just(new RateLimit(limit.getLimit(), result.get(1)))
+                    : Mono.error(new RateLimitExceededException(limit.getLimit(), Duration.ofMillis(result.get(2)))));
     }
 
     public Mono<Void> resetRateLimit(String key, String action) {
-        return redisTemplate.delete(RATE_LIMIT_PREFIX + action + ":" + key).then();
+        String rateKey = rateKey(key, action);
+        localWindows.remove(rateKey);
+        return redisGuard.call(redisTemplate.delete(rateKey).then(), Mono::empty);
+    }
+
+    // Same algorithm and result shape as the script, on this instance only
+    private List<Long> checkLocally(String rateKey, RateLimitProperties.Limit limit) {
+        long now = System.currentTimeMillis();
+        long window = limit.getWindow().toMillis();
+        long[] result = new long[3];
+        localWindows.compute(rateKey, limit.getWindow(), attempts -> {
+            long[] live = attempts == null
+                ? new long[0]
+                : Arrays.stream(attempts).filter(time -> time > now - window).toArray();
+            if (live.length < limit.getLimit()) {
+                long[] updated = Arrays.copyOf(live, live.length + 1);
+                updated[live.length] = now;
+                result[0] = 1;
+                result[1] = limit.getLimit() - live.length - 1;
+                return updated;
+            }
+            result[2] = live.length == 0 ? window : Math.max(1, live[0] + window - now);
+            return live;
+        });
+        return List.of(result[0], result[1], result[2]);
+    }
+
+    // Adds the attempts made during the outage to the Redis windows, on the Redis clock
+    private Mono<Void> reconcile() {
+        return redisTemplate.execute(connection -> connection.serverCommands().time())
+                .next()
+                .map(redisNow -> redisNow - System.currentTimeMillis())
+                .flatMap(this::reconcile);
+    }
+
+    private Mono<Void> reconcile(long clockOffset) {
+        return Flux.fromIterable(localWindows.snapshot().entrySet())
+                .concatMap(entry -> {
+                    String rateKey = entry.getKey();
+                    long[] attempts = entry.getValue().value();
+                    if (attempts.length == 0) {
+                        localWindows.remove(rateKey, attempts);
+                        return Mono.empty();
+                    }
+                    Set<ZSetOperations.TypedTuple<String>> tuples = Arrays.stream(attempts)
+                        .mapToObj(time -> ZSetOperations.TypedTuple.of(UUID.randomUUID().toString(), (double) (time + clockOffset)))
+                        .collect(Collectors.toSet());
+                    Duration remaining = entry.getValue().remaining();
+                    // Attempts recorded in Redis since the outage may keep the window alive longer
+                    return redisTemplate.opsForZSet().addAll(rateKey, tuples)
+                        .then(redisTemplate.getExpire(rateKey))
+                        .filter(ttl -> ttl.compareTo(remaining) < 0)
+                        .flatMap(ttl -> redisTemplate.expire(rateKey, remaining))
+                        .then(Mono.fromRunnable(() -> localWindows.remove(rateKey, attempts)));
+                })
+                .then();
+    }
+
+    private static String rateKey(String key, String action) {
+        return RATE_LIMIT_PREFIX + action + ":" + key;
     }
 }
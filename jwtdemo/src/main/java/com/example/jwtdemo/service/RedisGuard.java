@@ -0,0 +1,98 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.util.CircuitBreaker;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker in front of Redis. Calls get a short timeout; after a run
+ * of failures the breaker opens and callers go straight to their local
+ * fallback instead of waiting on Redis. Once a probe call succeeds again the
+ * registered recovery tasks run, so state kept locally during the outage is
+ * written back to Redis.
+ */
+@Service
+public class RedisGuard {
+    private static final Logger logger = LoggerFactory.getLogger(RedisGuard.class);
+
+    @Value("${redis.fallback.timeout:250}")
+    private long timeoutMillis;
+
+    @Value("${redis.fallback.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${redis.fallback.open-duration:10000}")
+    private long openDurationMillis;
+
+    private CircuitBreaker breaker;
+
+    private Duration timeout;
+
+    private final List<Supplier<Mono<Void>>> recoveryTasks = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        this.breaker = new CircuitBreaker(failureThreshold, TimeUnit.MILLISECONDS.toNanos(openDurationMillis));
+        this.timeout = Duration.ofMillis(timeoutMillis);
+    }
+
+    /**
+     * Runs a Redis call, or the fallback when the breaker is open or the call
+     * fails or times out.
+     */
+    public <T> Mono<T> call(Mono<T> redisCall, Supplier<Mono<T>> fallback) {
+        return Mono.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                return fallback.get();
+            }
+            return redisCall
+                    .timeout(timeout)
+                    .doOnSuccess(value -> onSuccess())
+                    .onErrorResume(ex -> {
+                        onFailure(ex);
+                        return fallback.get();
+                    });
+        });
+    }
+
+    public boolean isAvailable() {
+        return breaker.getState() == CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * Registers a task run each time Redis becomes reachable after an outage.
+     */
+    public void onRecovery(Supplier<Mono<Void>> task) {
+        recoveryTasks.add(task);
+    }
+
+    private void onSuccess() {
+        if (breaker.onSuccess()) {
+            logger.info("Redis reachable again, reconciling local state");
+            Flux.fromIterable(recoveryTasks)
+                .concatMap(task -> task.get()
+                    .onErrorResume(ex -> {
+                        logger.warn("Failed to reconcile local state with Redis: {}", ex.getMessage());
+                        return Mono.empty();
+                    }))
+                .subscribe();
+        }
+    }
+
+    private void onFailure(Throwable ex) {
+        if (breaker.onFailure()) {
+            logger.warn("Redis unavailable, using local fallback for {} ms: {}", openDurationMillis, ex.getMessage());
+        }
+    }
+}
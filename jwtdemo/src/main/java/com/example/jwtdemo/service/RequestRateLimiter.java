@@ -0,0 +1,119 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.config.RateLimitProperties;
+import com.example.jwtdemo.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request rate limits for the HTTP filter. Decisions are taken against local
+ * token buckets only, so a request costs a cache lookup and a CAS. Every sync
+ * interval the tokens each instance took are added to a shared total in Redis
+ * and the tokens the other instances took meanwhile are charged to the local
+ * bucket, so a client spread over instances converges on one budget.
+ */
+@Service
+public class RequestRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(RequestRateLimiter.class);
+
+    private static final String SYNC_PREFIX = "ratelimit:http:";
+    private static final int SYNC_CONCURRENCY = 64;
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    @Autowired
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+
+    private Cache<String, SyncedBucket> buckets;
+
+    private final AtomicLong syncRound = new AtomicLong();
+
+    private Disposable syncTask;
+
+    private static final class SyncedBucket {
+        final TokenBucket bucket;
+        // Shared total seen at the last sync and the round it was seen in
+        volatile long seenTotal;
+        volatile long seenRound = -1;
+
+        SyncedBucket(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        RateLimitProperties.Http http = rateLimitProperties.getHttp();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(http.getMaxBuckets())
+                .expireAfterAccess(http.getIdleTimeout())
+                .build();
+        this.syncTask = Flux.interval(http.getSyncInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> sync())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        syncTask.dispose();
+    }
+
+    /**
+     * Takes a token from the bucket with the given key, creating it full on
+     * first use.
+     *
+     * @return 0 when allowed, otherwise nanoseconds until a token is available.
+     */
+    public long tryAcquire(String key, RateLimitProperties.Bucket limit) {
+        long now = System.nanoTime();
+        SyncedBucket synced = buckets.get(key, k ->
+            new SyncedBucket(new TokenBucket(limit.getRatePerSecond(), limit.getCapacity(), now)));
+        return synced.bucket.tryAcquire(now);
+    }
+
+    private Mono<Void> sync() {
+        long round = syncRound.incrementAndGet();
+        return Flux.fromIterable(buckets.asMap().entrySet())
+                .flatMap(entry -> syncBucket(entry.getKey(), entry.getValue(), round), SYNC_CONCURRENCY)
+                .then()
+                .onErrorResume(ex -> {
+                    logger.warn("Failed to sync request rate limits: {}", ex.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    // Only buckets used locally are synced, usage elsewhere matters once the client shows up here
+    private Mono<Void> syncBucket(String key, SyncedBucket synced, long round) {
+        long taken = synced.bucket.drainUnsynced();
+        if (taken == 0) {
+            return Mono.empty();
+        }
+        String syncKey = SYNC_PREFIX + key;
+        return redisTemplate.opsForValue().increment(syncKey, taken)
+                .flatMap(total -> redisTemplate.expire(syncKey, rateLimitProperties.getHttp().getIdleTimeout()).thenReturn(total))
+                .doOnNext(total -> {
+                    // After an idle stretch the tokens taken elsewhere have long been refilled, only
+                    // usage between consecutive syncs is charged
+                    if (synced.seenRound == round - 1) {
+                        synced.bucket.consume(total - synced.seenTotal - taken, System.nanoTime());
+                    }
+                    synced.seenTotal = total;
+                    synced.seenRound = round;
+                })
+                .then();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local front for the token blacklist. A Bloom filter of revoked token hashes
+ * answers the common case, a token that was never revoked, without leaving the
+ * process; only possible hits are confirmed against Redis. The filter is fed by
+ * the revocation channel and rebuilt from the Redis snapshot periodically, which
+ * also drops revocations that have lapsed.
+ * <p>
+ * Until the first snapshot is loaded every token is checked against Redis.
+ * If Redis cannot be reached in that window the check fails open: only the
+ * revocations made on this instance are enforced, those made elsewhere are
+ * not known until Redis comes back and the snapshot loads.
+ */
+@Service
+public class TokenRevocationCache {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationCache.class);
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Value("${jwt.revocation.expected-tokens:100000}")
+    private long expectedTokens;
+
+    @Value("${jwt.revocation.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter revoked;
+
+    // Hashes announced while a snapshot is being loaded, replayed into the new filter
+    private List<String> pendingHashes;
+
+    private final Object rebuildLock = new Object();
+
+    // Until the first snapshot is loaded every token is checked against Redis
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        tokenService.revokedTokenHashes()
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+            .subscribe(this::add, ex -> logger.error("Token revocation channel closed: {}", ex.getMessage()));
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.snapshot-interval:300000}",
+               initialDelayString = "${jwt.revocation.snapshot-interval:300000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            if (pendingHashes != null) {
+                return;
+            }
+            pendingHashes = new ArrayList<>();
+        }
+        BloomFilter snapshot = new BloomFilter(expectedTokens, falsePositiveRate);
+        tokenService.getRevokedTokenHashes()
+            .doOnNext(snapshot::add)
+            .count()
+            .subscribe(count -> {
+                synchronized (rebuildLock) {
+                    pendingHashes.forEach(snapshot::add);
+                    pendingHashes = null;
+                    revoked = snapshot;
+                }
+                ready = true;
+                logger.info("Loaded {} revoked tokens", count);
+            }, ex -> {
+                synchronized (rebuildLock) {
+                    pendingHashes = null;
+                }
+                logger.warn("Failed to load revoked tokens: {}", ex.getMessage());
+            });
+    }
+
+    /**
+     * Records a revocation locally, so this instance enforces it without
+     * waiting for the channel message.
+     */
+    public void add(String tokenHash) {
+        synchronized (rebuildLock) {
+            if (pendingHashes != null) {
+                pendingHashes.add(tokenHash);
+            }
+            if (revoked != null) {
+                revoked.add(tokenHash);
+            }
+        }
+    }
+
+    /**
+     * Tells whether a token was revoked. Redis is only consulted when the local
+     * filter reports a possible hit, or before the first snapshot is loaded. A
+     * failing lookup counts as revoked when the filter flagged the token, and
+     * as not revoked before the first snapshot (see the class comment).
+     *
+     * @param tokenHash SHA-256 of the token.
+     * @return Mono of true when the token is revoked.
+     */
+    public Mono<Boolean> isRevoked(String tokenHash) {
+        BloomFilter current = revoked;
+        boolean loaded = ready && current != null;
+        if (loaded && !current.mightContain(tokenHash)) {
+            return Mono.just(false);
+        }
+        return tokenService.isTokenHashBlacklisted(tokenHash)
+            .onErrorResume(ex -> {
+                logger.warn("Failed to check token blacklist: {}", ex.getMessage());
+                return Mono.just(loaded);
+            });
+    }
+}
@@ -1,40 +1,153 @@
 package com.example.jwtdemo.service;
 
 import com.example.jwtdemo.exception.ApiException;
+import com.example.jwtdemo.util.JwtUtil;
+import com.example.jwtdemo.util.LocalTtlStore;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
 
+/**
+ * Token state kept in Redis. Refresh tokens, reset tokens and revocations
+ * fall back to a local store while Redis is unavailable (see RedisGuard), so
+ * login, logout and password reset keep working on each instance; what was
+ * stored locally is written back to Redis once it is reachable again. Until
+ * then a refresh or reset token written during the outage can only be found
+ * on the instance that wrote it, and looking up any other token fails with
+ * 503 so the client can retry instead of treating the token as unknown.
+ */
 @Service
 public class TokenService {
 
     @Autowired
     private ReactiveRedisTemplate<String, String> redisTemplate;
 
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Value("${redis.fallback.max-entries:100000}")
+    private long fallbackMaxEntries;
+
+    // Writes made while Redis was unavailable by Redis key, empty values are deletions
+    private LocalTtlStore<Optional<String>> pendingWrites;
+
+    // Tokens revoked while Redis was unavailable by hash, with the lapse time as value
+    private LocalTtlStore<Long> pendingRevocations;
+
     private static final String TOKEN_BLACKLIST_PREFIX = "token:blacklist:";
+    // Revoked token hashes scored by when their revocation lapses
+    private static final String REVOKED_TOKENS_KEY = "token:revoked";
+    private static final String REVOKED_TOKENS_CHANNEL = "token:revoked";
+    private static final String TOKEN_VERSIONS_CHANNEL = "token:version";
     private static final String REFRESH_TOKEN_PREFIX = "token:refresh:";
     private static final String RESET_TOKEN_PREFIX = "token:reset:";
     private static final Duration DEFAULT_BLACKLIST_DURATION = Duration.ofDays(1); // Blacklist tokens for 1 day by default
+    // Deletions only need to outlive the keys they delete
+    private static final Duration PENDING_DELETE_DURATION = Duration.ofDays(1);
+
+    @PostConstruct
+    public void init() {
+        this.pendingWrites = new LocalTtlStore<>(fallbackMaxEntries);
+        this.pendingRevocations = new LocalTtlStore<>(fallbackMaxEntries);
+        redisGuard.onRecovery(this::reconcile);
+    }
 
     public Mono<Boolean> isTokenBlacklisted(String token) {
-        return redisTemplate.hasKey(TOKEN_BLACKLIST_PREFIX + token);
+        return isTokenHashBlacklisted(JwtUtil.hashToken(token));
+    }
+
+    /**
+     * While Redis is unavailable only revocations made on this instance are
+     * known; for any other token the lookup fails, leaving the decision to the
+     * caller.
+     */
+    public Mono<Boolean> isTokenHashBlacklisted(String tokenHash) {
+        if (pendingRevocations.get(tokenHash) != null) {
+            return Mono.just(true);
+        }
+        return redisGuard.call(
+            redisTemplate.hasKey(TOKEN_BLACKLIST_PREFIX + tokenHash),
+            () -> Mono.error(new ApiException(
+                HttpStatus.SERVICE_UNAVAILABLE,
+                "Token blacklist unavailable",
+                "REDIS_UNAVAILABLE"
+            )));
     }
 
     public Mono<Void> blacklistToken(String token) {
         return blacklistToken(token, DEFAULT_BLACKLIST_DURATION);
     }
 
+    /**
+     * Revokes a token. Besides the blacklist key, the token hash is added to the
+     * revocation index used for snapshots and announced to every instance.
+     */
     public Mono<Void> blacklistToken(String token, Duration duration) {
+        String tokenHash = JwtUtil.hashToken(token);
+        long expiresAt = System.currentTimeMillis() + duration.toMillis();
+        return redisGuard.call(
+            blacklistTokenHash(tokenHash, duration, expiresAt),
+            () -> Mono.fromRunnable(() -> pendingRevocations.put(tokenHash, expiresAt, duration)));
+    }
+
+    private Mono<Void> blacklistTokenHash(String tokenHash, Duration duration, long expiresAt) {
         return redisTemplate.opsForValue()
-                .set(TOKEN_BLACKLIST_PREFIX + token, "", duration)
+                .set(TOKEN_BLACKLIST_PREFIX + tokenHash, "", duration)
+                .then(redisTemplate.opsForZSet().add(REVOKED_TOKENS_KEY, tokenHash, expiresAt))
+                .then(redisTemplate.convertAndSend(REVOKED_TOKENS_CHANNEL, tokenHash))
                 .then();
     }
 
+    /**
+     * Returns the hashes of all tokens whose revocation has not lapsed, dropping
+     * lapsed ones from the index on the way.
+     */
+    public Flux<String> getRevokedTokenHashes() {
+        double now = System.currentTimeMillis();
+        return redisTemplate.opsForZSet()
+                .removeRangeByScore(REVOKED_TOKENS_KEY, Range.closed(Double.NEGATIVE_INFINITY, now))
+                .thenMany(redisTemplate.opsForZSet()
+                    .rangeByScore(REVOKED_TOKENS_KEY, Range.closed(now, Double.POSITIVE_INFINITY)));
+    }
+
+    /**
+     * Hashes of tokens revoked from now on, on any instance.
+     */
+    public Flux<String> revokedTokenHashes() {
+        return redisTemplate.listenToChannel(REVOKED_TOKENS_CHANNEL)
+                .map(message -> message.getMessage());
+    }
+
+    /**
+     * Announces a user's new token version to every instance. The version
+     * itself is stored with the user.
+     */
+    public Mono<Void> publishTokenVersion(String email, long version) {
+        return redisTemplate.convertAndSend(TOKEN_VERSIONS_CHANNEL, version + ":" + email).then();
+    }
+
+    /**
+     * Token versions saved from now on, on any instance, as email to version entries.
+     */
+    public Flux<Map.Entry<String, Long>> tokenVersionUpdates() {
+        return redisTemplate.listenToChannel(TOKEN_VERSIONS_CHANNEL)
+                .map(message -> {
+                    String[] parts = message.getMessage().split(":", 2);
+                    return Map.entry(parts[1], Long.parseLong(parts[0]));
+                });
+    }
+
     public Mono<String> getRefreshToken(String userId) {
-        return redisTemplate.opsForValue().get(REFRESH_TOKEN_PREFIX + userId)
+        return get(REFRESH_TOKEN_PREFIX + userId)
                 .switchIfEmpty(Mono.error(new ApiException(
                     HttpStatus.UNAUTHORIZED, 
                     "Refresh token not found", 
@@ -43,17 +156,15 @@ public class TokenService {
     }
 
     public Mono<Void> saveRefreshToken(String userId, String refreshToken, Duration duration) {
-        return redisTemplate.opsForValue()
-                .set(REFRESH_TOKEN_PREFIX + userId, refreshToken, duration)
-                .then();
+        return set(REFRESH_TOKEN_PREFIX + userId, refreshToken, duration);
     }
 
     public Mono<Void> removeRefreshToken(String userId) {
-        return redisTemplate.delete(REFRESH_TOKEN_PREFIX + userId).then();
+        return delete(REFRESH_TOKEN_PREFIX + userId);
     }
 
     public Mono<String> getUserIdFromResetToken(String token) {
-        return redisTemplate.opsForValue().get(RESET_TOKEN_PREFIX + token)
+        return get(RESET_TOKEN_PREFIX + token)
                 .switchIfEmpty(Mono.error(new ApiException(
                     HttpStatus.BAD_REQUEST,
                     "Reset token not found or expired",
@@ -62,12 +173,61 @@ public class TokenService {
     }
 
     public Mono<Void> saveResetToken(String token, String userId, Duration duration) {
-        return redisTemplate.opsForValue()
-                .set(RESET_TOKEN_PREFIX + token, userId, duration)
-                .then();
+        return set(RESET_TOKEN_PREFIX + token, userId, duration);
     }
 
     public Mono<Void> removeResetToken(String token) {
-        return redisTemplate.delete(RESET_TOKEN_PREFIX + token).then();
+        return delete(RESET_TOKEN_PREFIX + token);
+    }
+
+    // A pending local write is newer than whatever Redis holds for the key, and the only definitive answer without Redis
+    private Mono<String> get(String key) {
+        Optional<String> pending = pendingWrites.get(key);
+        if (pending != null) {
+            return Mono.justOrEmpty(pending);
+        }
+        return redisGuard.call(
+            redisTemplate.opsForValue().get(key),
+            () -> Mono.error(new ApiException(
+                HttpStatus.SERVICE_UNAVAILABLE,
+                "Token store unavailable",
+                "REDIS_UNAVAILABLE"
+            )));
+    }
+
+    private Mono<Void> set(String key, String value, Duration duration) {
+        return redisGuard.call(
+            redisTemplate.opsForValue().set(key, value, duration)
+                .then(Mono.fromRunnable(() -> pendingWrites.remove(key))),
+            () -> Mono.fromRunnable(() -> pendingWrites.put(key, Optional.of(value), duration)));
+    }
+
+    private Mono<Void> delete(String key) {
+        return redisGuard.call(
+            redisTemplate.delete(key)
+                .then(Mono.fromRunnable(() -> pendingWrites.remove(key))),
+            () -> Mono.fromRunnable(() -> pendingWrites.put(key, Optional.empty(), PENDING_DELETE_DURATION)));
+    }
+
+    /**
+     * Writes what was stored locally during an outage back to Redis. Entries
+     * changed again meanwhile are left for the next reconciliation.
+     */
+    private Mono<Void> reconcile() {
+        Mono<Void> writes = Flux.fromIterable(pendingWrites.snapshot().entrySet())
+            .concatMap(entry -> {
+                String key = entry.getKey();
+                Optional<String> value = entry.getValue().value();
+                Mono<?> write = value.isPresent()
+                    ? redisTemplate.opsForValue().set(key, value.get(), entry.getValue().remaining())
+                    : redisTemplate.delete(key);
+                return write.then(Mono.fromRunnable(() -> pendingWrites.remove(key, value)));
+            })
+            .then();
+        Mono<Void> revocations = Flux.fromIterable(pendingRevocations.snapshot().entrySet())
+            .concatMap(entry -> blacklistTokenHash(entry.getKey(), entry.getValue().remaining(), entry.getValue().value())
+                .then(Mono.fromRunnable(() -> pendingRevocations.remove(entry.getKey()))))
+            .then();
+        return writes.then(revocations);
     }
 }
@@ -0,0 +1,94 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.model.User;
+import com.example.jwtdemo.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local copy of the token versions of users whose tokens were invalidated,
+ * so a token's version claim is checked without a lookup per request. Users
+ * missing from the map are on version 0. The versions stored with the users
+ * in MongoDB are the source of truth: the copy is loaded from them at startup
+ * and reloaded periodically, and the Redis version channel only brings
+ * changes made on other instances in sooner.
+ */
+@Service
+public class TokenVersionCache {
+    private static final Logger logger = LoggerFactory.getLogger(TokenVersionCache.class);
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    // Until the first snapshot is loaded versions are read from the user
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        tokenService.tokenVersionUpdates()
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+            .subscribe(update -> update(update.getKey(), update.getValue()),
+                       ex -> logger.error("Token version channel closed: {}", ex.getMessage()));
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.snapshot-interval:300000}",
+               initialDelayString = "${jwt.revocation.snapshot-interval:300000}")
+    public void reload() {
+        userRepository.findTokenVersions()
+            .filter(user -> user.getEmail() != null)
+            .doOnNext(user -> update(user.getEmail(), user.getTokenVersion()))
+            .count()
+            .subscribe(count -> {
+                ready = true;
+                logger.info("Loaded token versions of {} users", count);
+            }, ex -> logger.warn("Failed to load token versions: {}", ex.getMessage()));
+    }
+
+    /**
+     * Records a user's token version locally. Versions only move forward, so a
+     * late message cannot bring back tokens that were invalidated since.
+     */
+    public void update(String email, long version) {
+        versions.merge(email, version, Math::max);
+    }
+
+    /**
+     * Tells whether a token issued with the given version is still current for
+     * the user. Before the first snapshot the user is looked up, and a failing
+     * lookup rejects the token.
+     *
+     * @param email Subject of the token.
+     * @param version Version claim of the token.
+     * @return Mono of true when the token has not been invalidated.
+     */
+    public Mono<Boolean> isCurrent(String email, long version) {
+        if (ready) {
+            return Mono.just(versions.getOrDefault(email, 0L) <= version);
+        }
+        return userRepository.findByEmail(email)
+            .map(User::getTokenVersion)
+            .defaultIfEmpty(0L)
+            .map(current -> current <= version)
+            .onErrorResume(ex -> {
+                logger.warn("Failed to check token version: {}", ex.getMessage());
+                return Mono.just(false);
+            });
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.exception.ApiException;
+import com.example.jwtdemo.model.Project;
+import com.example.jwtdemo.model.UploadSession;
+import com.example.jwtdemo.model.UploadSessionStatus;
+import com.example.jwtdemo.repository.UploadSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Resumable uploads: a file is sent as numbered chunks that are persisted as
+ * they arrive, so a dropped connection only costs the chunk in flight.
+ */
+@Service
+public class UploadSessionService {
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionService.class);
+    private static final int MIN_CHUNK_SIZE = 64 * 1024; // 64KB
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024; // 16MB
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-fA-F]{64}");
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ProjectFileStorageService fileStorageService;
+
+    @Value("${upload.session.expiration:86400}") // 24 hours default
+    private long sessionExpiration;
+
+    @Value("${upload.session.commit-timeout:3600}") // seconds a commit may run before it counts as interrupted
+    private long commitTimeout;
+
+    /**
+     * Opens an upload session for a file of a project owned by the user.
+     *
+     * @param projectId Project the file will be attached to.
+     * @param userId Current user.
+     * @param request Filename, content type, total size and chunk size of the upload.
+     * @return Mono of the created UploadSession.
+     */
+    public Mono<UploadSession> createSession(String projectId, String userId, UploadSession request) {
+        if (request.getFilename() == null || request.getFilename().isBlank()) {
+            return Mono.error(new ApiException(HttpStatus.BAD_REQUEST, "Filename is required", "INVALID_UPLOAD"));
+        }
+        if (request.getSha256() != null && !SHA256_HEX.matcher(request.getSha256()).matches()) {
+            return Mono.error(new ApiException(HttpStatus.BAD_REQUEST, "SHA-256 must be 64 hex characters", "INVALID_UPLOAD"));
+        }
+        if (request.getTotalSize() < 0
+                || request.getChunkSize() < MIN_CHUNK_SIZE || request.getChunkSize() > MAX_CHUNK_SIZE) {
+            return Mono.error(new ApiException(
+                HttpStatus.BAD_REQUEST,
+                "Chunk size must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE + " bytes",
+                "INVALID_UPLOAD"
+            ));
+        }
+
+        return projectService.getProjectById(projectId)
+            .flatMap(project -> {
+                if (!project.getUserId().equals(userId)) {
+                    return Mono.error(new ApiException(
+                        HttpStatus.FORBIDDEN,
+                        "You can only upload to your own projects",
+                        "FORBIDDEN"
+                    ));
+                }
+                UploadSession session = new UploadSession();
+                session.setProjectId(projectId);
+                session.setUserId(userId);
+                session.setFilename(request.getFilename());
+                session.setContentType(request.getContentType() != null
+                    ? request.getContentType() : "application/octet-stream");
+                session.setTotalSize(request.getTotalSize());
+                session.setSha256(request.getSha256() == null ? null : request.getSha256().toLowerCase());
+                session.setChunkSize(request.getChunkSize());
+                session.setChunkCount((int) Math.max(1,
+                    (request.getTotalSize() + request.getChunkSize() - 1) / request.getChunkSize()));
+                session.setStatus(UploadSessionStatus.OPEN);
+                session.setCreatedAt(LocalDateTime.now());
+                session.setExpiresAt(LocalDateTime.now().plusSeconds(sessionExpiration));
+                return uploadSessionRepository.save(session);
+            });
+    }
+
+    public Mono<UploadSession> getSession(String sessionId, String userId) {
+        return uploadSessionRepository.findById(sessionId)
+            .filter(session -> session.getUserId().equals(userId))
+            .switchIfEmpty(Mono.error(new ApiException(
+                HttpStatus.NOT_FOUND,
+                "Upload session not found",
+                "UPLOAD_SESSION_NOT_FOUND"
+            )));
+    }
+
+    /**
+     * Stores one chunk. Re-sending a chunk replaces the earlier copy.
+     *
+     * @param sessionId Upload session.
+     * @param userId Current user.
+     * @param index Zero-based chunk index.
+     * @param sha256 Hex encoded SHA-256 of the chunk, checked against the received bytes.
+     * @param content Chunk content.
+     * @return Mono of the session including the new chunk.
+     */
+    public Mono<UploadSession> putChunk(String sessionId, String userId, int index, String sha256,
+                                        Flux<DataBuffer> content) {
+        return getOpenSession(sessionId, userId)
+            .flatMap(session -> {
+                if (index < 0 || index >= session.getChunkCount()) {
+                    return Mono.error(new ApiException(
+                        HttpStatus.BAD_REQUEST,
+                        "Chunk index out of range: " + index,
+                        "INVALID_CHUNK"
+                    ));
+                }
+                // One byte past the expected size is enough to reject an oversized chunk, the rest is never stored
+                long expectedSize = session.expectedChunkSize(index);
+                return fileStorageService.storeChunk(sessionId, index, DataBufferUtils.takeUntilByteCount(content, expectedSize + 1))
+                    .flatMap(chunk -> {
+                        if (chunk.getSize() != expectedSize) {
+                            return rejectChunk(chunk, chunk.getSize() > expectedSize
+                                ? "Chunk " + index + " is larger than the expected " + expectedSize + " bytes"
+                                : "Chunk " + index + " has " + chunk.getSize() + " bytes, expected " + expectedSize);
+                        }
+                        if (sha256 == null || !sha256.equalsIgnoreCase(chunk.getSha256())) {
+                            return rejectChunk(chunk, "Checksum mismatch for chunk " + index);
+                        }
+                        return recordChunk(sessionId, chunk);
+                    });
+            });
+    }
+
+    private Mono<UploadSession> rejectChunk(UploadSession.Chunk chunk, String message) {
+        return fileStorageService.deleteChunk(chunk)
+            .then(Mono.error(new ApiException(HttpStatus.BAD_REQUEST, message, "INVALID_CHUNK")));
+    }
+
+    private Mono<UploadSession> recordChunk(String sessionId, UploadSession.Chunk chunk) {
+        String key = "chunks." + chunk.getIndex();
+        return mongoTemplate.findAndModify(
+                query(where("_id").is(sessionId).and("status").is(UploadSessionStatus.OPEN)),
+                new Update().set(key, chunk),
+                FindAndModifyOptions.options().returnNew(false),
+                UploadSession.class)
+            .switchIfEmpty(Mono.defer(() -> rejectChunk(chunk, "Upload session is no longer open")))
+            .flatMap(previous -> {
+                UploadSession.Chunk replaced = previous.getChunks().get(String.valueOf(chunk.getIndex()));
+                Mono<Void> cleanup = replaced == null ? Mono.empty() : fileStorageService.deleteChunk(replaced);
+                previous.getChunks().put(String.valueOf(chunk.getIndex()), chunk);
+                return cleanup.thenReturn(previous);
+            });
+    }
+
+    /**
+     * Assembles the received chunks into a stored file and attaches it to the project.
+     *
+     * @param sessionId Upload session.
+     * @param userId Current user.
+     * @return Mono of the updated project.
+     */
+    public Mono<Project> commit(String sessionId, String userId) {
+        return getOpenSession(sessionId, userId)
+            .flatMap(session -> {
+                if (session.getChunks().size() != session.getChunkCount()) {
+                    return Mono.error(new ApiException(
+                        HttpStatus.BAD_REQUEST,
+                        "Upload incomplete: " + session.getChunks().size() + " of " + session.getChunkCount()
+                            + " chunks received",
+                        "UPLOAD_INCOMPLETE"
+                    ));
+                }
+                return transition(sessionId, UploadSessionStatus.OPEN, UploadSessionStatus.COMMITTING)
+                    .flatMap(committing -> {
+                        Flux<DataBuffer> content = Flux.fromIterable(committing.getChunks().values())
+                            .sort(Comparator.comparingInt(UploadSession.Chunk::getIndex))
+                            .concatMap(fileStorageService::readChunk);
+                        // Re-reading the chunks is safe, so an announced hash can skip writing duplicate content
+                        return fileStorageService.store(committing.getFilename(), committing.getContentType(), content,
+                                committing.getSha256())
+                            .flatMap(file -> projectService.attachFile(committing.getProjectId(), file)
+                                .onErrorResume(ex -> fileStorageService.release(file).then(Mono.error(ex))))
+                            .flatMap(project -> discard(committing).thenReturn(project))
+                            .onErrorResume(ex -> transition(sessionId, UploadSessionStatus.COMMITTING, UploadSessionStatus.OPEN)
+                                .then(Mono.error(ex)));
+                    });
+            });
+    }
+
+    public Mono<Void> abort(String sessionId, String userId) {
+        return getOpenSession(sessionId, userId).flatMap(this::discard);
+    }
+
+    @Scheduled(fixedDelayString = "${upload.session.cleanup-interval:3600000}")
+    public void removeExpiredSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        Flux<Void> expired = uploadSessionRepository.findByStatusAndExpiresAtBefore(UploadSessionStatus.OPEN, now)
+            .concatMap(this::discard);
+        // A commit cut short by a restart leaves the session COMMITTING; it is reopened for a retry, or dropped once expired
+        Flux<Void> stalled = mongoTemplate.find(
+                query(where("status").is(UploadSessionStatus.COMMITTING).orOperator(
+                    where("commitStartedAt").lt(now.minusSeconds(commitTimeout)),
+                    where("commitStartedAt").exists(false).and("expiresAt").lt(now))),
+                UploadSession.class)
+            .concatMap(session -> session.getExpiresAt().isBefore(now)
+                ? discard(session)
+                : reopen(session));
+        Flux.concat(expired, stalled)
+            .doOnError(ex -> logger.error("Failed to remove expired upload sessions", ex))
+            .subscribe();
+    }
+
+    private Mono<UploadSession> getOpenSession(String sessionId, String userId) {
+        return getSession(sessionId, userId)
+            .filter(session -> session.getStatus() == UploadSessionStatus.OPEN)
+            .switchIfEmpty(Mono.error(new ApiException(
+                HttpStatus.CONFLICT,
+                "Upload session is no longer open",
+                "UPLOAD_SESSION_CLOSED"
+            )));
+    }
+
+    private Mono<Void> reopen(UploadSession session) {
+        logger.info("Reopening upload session {} after an interrupted commit", session.getId());
+        return transition(session.getId(), UploadSessionStatus.COMMITTING, UploadSessionStatus.OPEN)
+            .onErrorResume(ApiException.class, ex -> Mono.empty())
+            .then();
+    }
+
+    private Mono<UploadSession> transition(String sessionId, UploadSessionStatus from, UploadSessionStatus to) {
+        Update update = new Update().set("status", to);
+        if (to == UploadSessionStatus.COMMITTING) {
+            update.set("commitStartedAt", LocalDateTime.now());
+        } else {
+            update.unset("commitStartedAt");
+        }
+        return mongoTemplate.findAndModify(
+                query(where("_id").is(sessionId).and("status").is(from)),
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class)
+            .switchIfEmpty(Mono.error(new ApiException(
+                HttpStatus.CONFLICT,
+                "Upload session is no longer open",
+                "UPLOAD_SESSION_CLOSED"
+            )));
+    }
+
+    private Mono<Void> discard(UploadSession session) {
+        logger.info("Discarding upload session {} ({} chunks)", session.getId(), session.getChunks().size());
+        return Flux.fromIterable(session.getChunks().values())
+            .concatMap(fileStorageService::deleteChunk)
+            .then(uploadSessionRepository.deleteById(session.getId()));
+    }
+}
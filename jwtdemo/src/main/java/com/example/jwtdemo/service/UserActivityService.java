@@ -1,13 +1,20 @@
 package com.example.jwtdemo.service;
 
+import com.example.jwtdemo.dto.ActivityStreaksDto;
 import com.example.jwtdemo.model.UserActivity;
 import com.example.jwtdemo.repository.UserActivityRepository;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Locale;
 
 @Service
 public class UserActivityService {
@@ -15,14 +22,28 @@ public class UserActivityService {
     @Autowired
     private UserActivityRepository userActivityRepository;
 
+    @Autowired
+    private UserActivityWriter userActivityWriter;
+
+    @Autowired
+    private UserActivityStatsService userActivityStatsService;
+
+    /**
+     * Records an activity on subscription. It is queued and written with the
+     * next batch, so the returned Mono completes without waiting for MongoDB.
+     */
     public Mono<UserActivity> logActivity(String userId, String projectId, String action, String description) {
-        UserActivity activity = new UserActivity();
-        activity.setUserId(userId);
-        activity.setProjectId(projectId);
-        activity.setAction(action);
-        activity.setDescription(description);
-        activity.setTimestamp(LocalDateTime.now());
-        return userActivityRepository.save(activity);
+        return Mono.defer(() -> {
+            UserActivity activity = new UserActivity();
+            // Assigned up front so replaying the write-ahead log cannot duplicate it
+            activity.setId(new ObjectId().toHexString());
+            activity.setUserId(userId);
+            activity.setProjectId(projectId);
+            activity.setAction(normalizeAction(action));
+            activity.setDescription(description);
+            activity.setTimestamp(LocalDateTime.now());
+            return userActivityWriter.write(activity);
+        });
     }
 
     public Mono<UserActivity> logFileUpload(String userId, String projectId, String fileName) {
@@ -41,19 +62,65 @@ public class UserActivityService {
         return userActivityRepository.findByProjectIdOrderByTimestampDesc(projectId);
     }
 
-    public Flux<UserActivity> getActivitiesByProjectAndAction(String projectId, String action) {
-        return userActivityRepository.findByProjectIdOrderByTimestampDesc(projectId)
-            .filter(activity -> activity.getAction().equalsIgnoreCase(action));
+    /**
+     * Lists a project's activities with the given action newest first,
+     * continuing after the cursor.
+     *
+     * @param cursor Opaque cursor from {@link #cursorOf(UserActivity)}, null for the first page.
+     */
+    public Flux<UserActivity> getActivitiesByProjectAndAction(String projectId, String action, String cursor, Pageable pageable) {
+        String normalized = normalizeAction(action);
+        if (cursor == null || cursor.isEmpty()) {
+            return userActivityRepository.findByProjectAndActionNewestFirst(projectId, normalized, pageable);
+        }
+        return parseCursor(cursor).flatMapMany(position -> userActivityRepository.findByProjectAndActionNewestFirstAfter(
+            projectId, normalized, position.timestamp(), position.id(), pageable));
     }
 
-    public Flux<UserActivity> getActivitiesByUserAndAction(String userId, String action) {
-        return userActivityRepository.findByUserIdOrderByTimestampDesc(userId)
-            .filter(activity -> activity.getAction().equalsIgnoreCase(action));
+    /**
+     * Lists a user's activities with the given action newest first,
+     * continuing after the cursor.
+     *
+     * @param cursor Opaque cursor from {@link #cursorOf(UserActivity)}, null for the first page.
+     */
+    public Flux<UserActivity> getActivitiesByUserAndAction(String userId, String action, String cursor, Pageable pageable) {
+        String normalized = normalizeAction(action);
+        if (cursor == null || cursor.isEmpty()) {
+            return userActivityRepository.findByUserAndActionNewestFirst(userId, normalized, pageable);
+        }
+        return parseCursor(cursor).flatMapMany(position -> userActivityRepository.findByUserAndActionNewestFirstAfter(
+            userId, normalized, position.timestamp(), position.id(), pageable));
     }
 
-    public Flux<UserActivity> getActivityStreaks(String userId) {
-        // Example: return all activities, frontend can calculate streaks
-        return userActivityRepository.findByUserIdOrderByTimestampDesc(userId);
+    /**
+     * Cursor pointing just after the given activity in the newest first order.
+     */
+    public static String cursorOf(UserActivity activity) {
+        String position = activity.getTimestamp() + "|" + activity.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Position(LocalDateTime timestamp, ObjectId id) {}
+
+    private static Mono<Position> parseCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+            if (position.length == 2 && ObjectId.isValid(position[1])) {
+                return Mono.just(new Position(LocalDateTime.parse(position[0]), new ObjectId(position[1])));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            // Reported below
+        }
+        return Mono.error(new IllegalArgumentException("Invalid cursor"));
+    }
+
+    // Actions are stored upper case so lookups can match them exactly against the index
+    private static String normalizeAction(String action) {
+        return action == null ? null : action.trim().toUpperCase(Locale.ROOT);
+    }
+
+    public Mono<ActivityStreaksDto> getActivityStreaks(String userId) {
+        return userActivityStatsService.getActivityStreaks(userId);
     }
 
     public Object getRecentActivities() {
@@ -0,0 +1,260 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.dto.ActivityStreaksDto;
+import com.example.jwtdemo.model.UserActivity;
+import com.example.jwtdemo.model.UserActivityStats;
+import com.example.jwtdemo.repository.UserActivityRepository;
+import com.example.jwtdemo.repository.UserActivityStatsRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a per-user activity summary with daily counts, streaks and per-action
+ * totals. Each written batch adds to the summaries with one pipeline update
+ * per user and day, so reading a summary costs a single document lookup. A
+ * user whose summary predates activities already in the history gets it
+ * rebuilt from the history once, on first read.
+ */
+@Service
+public class UserActivityStatsService {
+    private static final Logger logger = LoggerFactory.getLogger(UserActivityStatsService.class);
+
+    private static final int UPDATE_CONCURRENCY = 16;
+    private static final int REBUILD_ATTEMPTS = 3;
+    // Longest an activity can sit between its insert and its record() call, including insert retries
+    private static final Duration RECORD_LAG = Duration.ofHours(1);
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private UserActivityStatsRepository userActivityStatsRepository;
+
+    @Autowired
+    private UserActivityRepository userActivityRepository;
+
+    @Value("${activity.stats.heatmap-days:90}")
+    private int heatmapDays;
+
+    /**
+     * Adds stored activities to their users' summaries. Failures are logged,
+     * the activities themselves are already stored.
+     */
+    public Mono<Void> record(List<UserActivity> activities) {
+        Map<String, TreeMap<LocalDate, List<UserActivity>>> byUserAndDay = activities.stream()
+            .filter(activity -> activity.getUserId() != null && activity.getTimestamp() != null)
+            .collect(Collectors.groupingBy(UserActivity::getUserId,
+                Collectors.groupingBy(activity -> activity.getTimestamp().toLocalDate(), TreeMap::new, Collectors.toList())));
+
+        return Flux.fromIterable(byUserAndDay.entrySet())
+            // Days of one user in order, the streak update relies on it
+            .flatMap(user -> Flux.fromIterable(user.getValue().entrySet())
+                .concatMap(day -> mongoTemplate.upsert(
+                    Query.query(Criteria.where("userId").is(user.getKey())),
+                    dayUpdate(day.getKey(), day.getValue()),
+                    UserActivityStats.class)),
+                UPDATE_CONCURRENCY)
+            .then()
+            .onErrorResume(ex -> {
+                logger.error("Failed to update activity stats: {}", ex.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    public Mono<ActivityStreaksDto> getActivityStreaks(String userId) {
+        return userActivityStatsRepository.findById(userId)
+            .filter(UserActivityStats::isComplete)
+            .switchIfEmpty(Mono.defer(() -> rebuild(userId)))
+            .map(this::toStreaksDto);
+    }
+
+    /*
+     * Counts the user's whole history, once per user. Every record() bumps
+     * the summary's version, so the rebuilt summary is only written if no
+     * update landed since the version was read; otherwise the rebuild starts
+     * over. Recent activities in the history are listed in countedIds, so a
+     * record() for one of them arriving after the rebuild does not count it
+     * again.
+     */
+    private Mono<UserActivityStats> rebuild(String userId) {
+        return rebuild(userId, REBUILD_ATTEMPTS);
+    }
+
+    private Mono<UserActivityStats> rebuild(String userId, int attemptsLeft) {
+        return userActivityStatsRepository.findById(userId)
+            .map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .flatMap(existing -> {
+                if (existing.isPresent() && existing.get().isComplete()) {
+                    return Mono.just(existing.get());
+                }
+                long version = existing.map(UserActivityStats::getVersion).orElse(0L);
+                return userActivityRepository.findByUserIdOrderByTimestampDesc(userId)
+                    .collectList()
+                    .map(history -> summarize(userId, history, version + 1))
+                    .flatMap(summary -> {
+                        Mono<UserActivityStats> written = existing.isPresent()
+                            ? mongoTemplate.findAndReplace(
+                                Query.query(unchangedSince(userId, version)),
+                                summary, FindAndReplaceOptions.options().returnNew())
+                            : mongoTemplate.insert(summary)
+                                .onErrorResume(DuplicateKeyException.class, ex -> Mono.empty());
+                        return written.switchIfEmpty(Mono.defer(() -> {
+                            if (attemptsLeft > 1) {
+                                return rebuild(userId, attemptsLeft - 1);
+                            }
+                            // Busy user, serve this summary and count again on the next read
+                            logger.warn("Activity stats for {} kept changing during rebuild", userId);
+                            return Mono.just(summary);
+                        }));
+                    });
+            });
+    }
+
+    private UserActivityStats summarize(String userId, List<UserActivity> history, long version) {
+        TreeMap<LocalDate, Integer> perDay = new TreeMap<>();
+        Map<String, Long> actions = new HashMap<>();
+        for (UserActivity activity : history) {
+            if (activity.getTimestamp() != null) {
+                perDay.merge(activity.getTimestamp().toLocalDate(), 1, Integer::sum);
+            }
+            actions.merge(fieldName(activity.getAction()), 1L, Long::sum);
+        }
+
+        int current = 0;
+        int longest = 0;
+        LocalDate previous = null;
+        for (LocalDate day : perDay.keySet()) {
+            current = previous != null && previous.plusDays(1).equals(day) ? current + 1 : 1;
+            longest = Math.max(longest, current);
+            previous = day;
+        }
+
+        String cutoff = heatmapStart().toString();
+        UserActivityStats stats = new UserActivityStats();
+        stats.setUserId(userId);
+        stats.setTotal(history.size());
+        stats.setActions(actions);
+        stats.setDays(perDay.entrySet().stream()
+            .filter(entry -> entry.getKey().toString().compareTo(cutoff) >= 0)
+            .collect(Collectors.toMap(entry -> entry.getKey().toString(), Map.Entry::getValue)));
+        stats.setLastActiveDay(previous == null ? null : previous.toString());
+        stats.setCurrentStreak(current);
+        stats.setLongestStreak(longest);
+        LocalDateTime recent = LocalDateTime.now().minus(RECORD_LAG);
+        stats.setCountedIds(history.stream()
+            .filter(activity -> activity.getTimestamp() != null && activity.getTimestamp().isAfter(recent))
+            .map(UserActivity::getId)
+            .toList());
+        stats.setVersion(version);
+        stats.setComplete(true);
+        return stats;
+    }
+
+    /*
+     * Adds one day's activities, leaving out any a rebuild already counted
+     * (see countedIds), and bumps the version. The first stage counts them
+     * and extends the streak when the day follows the last active day; a day
+     * at or before the last active one (a replay from the write-ahead log)
+     * leaves the streak as is. The second stage moves lastActiveDay and drops
+     * days that fell out of the heatmap window. ISO dates compare correctly as
+     * strings.
+     */
+    private AggregationUpdate dayUpdate(LocalDate day, List<UserActivity> activities) {
+        String dayKey = day.toString();
+        Object dayCount = uncounted(activities);
+        Document counts = new Document("total", increment("total", dayCount))
+            .append("days." + dayKey, increment("days." + dayKey, dayCount))
+            .append("version", increment("version", 1));
+        activities.stream()
+            .collect(Collectors.groupingBy(activity -> fieldName(activity.getAction())))
+            .forEach((action, ofAction) -> counts.append("actions." + action, increment("actions." + action, uncounted(ofAction))));
+
+        Object currentStreak = new Document("$ifNull", List.of("$currentStreak", 0));
+        Object lastActiveDay = new Document("$ifNull", List.of("$lastActiveDay", ""));
+        counts.append("currentStreak", new Document("$switch", new Document("branches", List.of(
+                new Document("case", new Document("$gte", List.of(lastActiveDay, dayKey))).append("then", currentStreak),
+                new Document("case", new Document("$eq", List.of("$lastActiveDay", day.minusDays(1).toString())))
+                    .append("then", new Document("$add", List.of(currentStreak, 1)))))
+            .append("default", 1)));
+
+        Document window = new Document("lastActiveDay", new Document("$max", List.of(lastActiveDay, dayKey)))
+            .append("longestStreak", new Document("$max", List.of(new Document("$ifNull", List.of("$longestStreak", 0)), "$currentStreak")))
+            .append("days", new Document("$arrayToObject", new Document("$filter", new Document("input", new Document("$objectToArray", "$days"))
+                .append("cond", new Document("$gte", List.of("$$this.k", heatmapStart().toString()))))))
+            .append("complete", new Document("$ifNull", List.of("$complete", false)));
+
+        return AggregationUpdate.from(List.of(stage("$set", counts), stage("$set", window)));
+    }
+
+    private ActivityStreaksDto toStreaksDto(UserActivityStats stats) {
+        LocalDate today = LocalDate.now();
+        boolean ongoing = stats.getLastActiveDay() != null
+            && stats.getLastActiveDay().compareTo(today.minusDays(1).toString()) >= 0;
+        String cutoff = heatmapStart().toString();
+
+        ActivityStreaksDto dto = new ActivityStreaksDto();
+        dto.setCurrentStreak(ongoing ? stats.getCurrentStreak() : 0);
+        dto.setLongestStreak(stats.getLongestStreak());
+        dto.setLastActiveDay(stats.getLastActiveDay());
+        dto.setTotalActivities(stats.getTotal());
+        dto.setActionTotals(stats.getActions() == null ? Map.of() : stats.getActions());
+        dto.setHeatmap(stats.getDays() == null ? Map.of() : stats.getDays().entrySet().stream()
+            .filter(entry -> entry.getKey().compareTo(cutoff) >= 0)
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Integer::sum, TreeMap::new)));
+        return dto;
+    }
+
+    private LocalDate heatmapStart() {
+        return LocalDate.now().minusDays(heatmapDays - 1L);
+    }
+
+    private static Criteria unchangedSince(String userId, long version) {
+        Criteria incomplete = Criteria.where("userId").is(userId).and("complete").ne(true);
+        // Summaries written before versioning have no version field
+        return version == 0 ? incomplete.and("version").in(0L, null) : incomplete.and("version").is(version);
+    }
+
+    // Number of the activities not listed in countedIds
+    private static Document uncounted(List<UserActivity> activities) {
+        List<String> ids = activities.stream().map(UserActivity::getId).toList();
+        return new Document("$size", new Document("$setDifference",
+            List.of(ids, new Document("$ifNull", List.of("$countedIds", List.of())))));
+    }
+
+    private static Document increment(String field, Object amount) {
+        return new Document("$add", List.of(new Document("$ifNull", List.of("$" + field, 0)), amount));
+    }
+
+    private static AggregationOperation stage(String operator, Document body) {
+        return context -> new Document(operator, body);
+    }
+
+    // Actions become field names, which must not contain dots or start with $
+    private static String fieldName(String action) {
+        return action == null ? "UNKNOWN" : action.replace('.', '_').replace('$', '_');
+    }
+}
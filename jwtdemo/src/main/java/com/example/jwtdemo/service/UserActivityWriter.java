@@ -0,0 +1,429 @@
+package com.example.jwtdemo.service;
+
+import com.example.jwtdemo.model.UserActivity;
+import com.example.jwtdemo.util.WriteAheadLog;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes user activities to MongoDB in batches off the request path.
+ * Activities are queued in a bounded in-memory buffer and inserted with one
+ * insertMany per batch, once a batch is full or the flush interval passes.
+ * When the buffer is full the overflow policy decides between writing the
+ * activity directly, dropping it or dropping the oldest queued one. A batch
+ * that cannot be stored is requeued and retried with the next flush.
+ * <p>
+ * With activity.write.wal-dir set, queued activities are also appended to a
+ * local write-ahead log and inserted from it on the next start if the
+ * process stops before they reach MongoDB. Activities get their ID when they
+ * are queued, so one already inserted is skipped when the log is replayed.
+ */
+@Service
+public class UserActivityWriter {
+    private static final Logger logger = LoggerFactory.getLogger(UserActivityWriter.class);
+
+    private static final int INSERT_RETRIES = 3;
+    private static final Duration SHUTDOWN_FLUSH_TIMEOUT = Duration.ofSeconds(10);
+
+    public enum OverflowPolicy {
+        /** Insert the activity on the caller's request, which then waits for MongoDB. */
+        WRITE_THROUGH,
+        /** Discard the activity being logged. */
+        DROP_NEWEST,
+        /** Discard the oldest queued activity to make room. */
+        DROP_OLDEST
+    }
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserActivityStatsService userActivityStatsService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${activity.write.capacity:10000}")
+    private int capacity;
+
+    @Value("${activity.write.batch-size:500}")
+    private int batchSize;
+
+    @Value("${activity.write.flush-interval:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${activity.write.overflow:WRITE_THROUGH}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${activity.write.wal-dir:}")
+    private String walDir;
+
+    private BlockingQueue<UserActivity> queue;
+
+    private WriteAheadLog wal;
+
+    // Appends take the read lock, so a rotation never separates a log entry from its queued activity
+    private final ReentrantReadWriteLock walLock = new ReentrantReadWriteLock();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    // Log segments of requeued activities, guarded by the write lock
+    private final List<Path> carriedSegments = new ArrayList<>();
+
+    // Set by the flush in progress when a requeue overflowed the buffer
+    private volatile boolean overflowedOnRequeue;
+
+    private Disposable flushTask;
+
+    private Counter droppedCounter;
+
+    private Counter writeThroughCounter;
+
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void init() throws IOException {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        if (!walDir.isBlank()) {
+            this.wal = new WriteAheadLog(Path.of(walDir));
+        }
+        meterRegistry.gauge("user.activity.queue.size", queue, BlockingQueue::size);
+        this.droppedCounter = Counter.builder("user.activity.dropped")
+                .description("Activities discarded because the write buffer was full or could not be inserted")
+                .register(meterRegistry);
+        this.writeThroughCounter = Counter.builder("user.activity.write.through")
+                .description("Activities inserted on the request path because the write buffer was full")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("user.activity.flush")
+                .description("Time to insert a batch of activities")
+                .register(meterRegistry);
+        this.flushTask = Flux.interval(Duration.ofMillis(flushIntervalMillis))
+                .subscribe(tick -> flush());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushTask.dispose();
+        try {
+            // Let a running flush finish so the final drain sees the rest of the queue
+            long deadline = System.nanoTime() + SHUTDOWN_FLUSH_TIMEOUT.toNanos();
+            while (!flushing.compareAndSet(false, true) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            drain().block(SHUTDOWN_FLUSH_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to flush {} activities on shutdown: {}", queue.size(), e.getMessage());
+        }
+        if (wal != null) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close activity write-ahead log: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queues an activity for the next batch on subscription. Only waits for
+     * MongoDB when the buffer is full and the overflow policy is WRITE_THROUGH.
+     */
+    public Mono<UserActivity> write(UserActivity activity) {
+        return Mono.defer(() -> enqueueOrWrite(activity));
+    }
+
+    private Mono<UserActivity> enqueueOrWrite(UserActivity activity) {
+        if (enqueue(activity)) {
+            if (queue.size() >= batchSize) {
+                flush();
+            }
+            return Mono.just(activity);
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                while (!enqueue(activity)) {
+                    if (queue.poll() != null) {
+                        droppedCounter.increment();
+                    }
+                }
+                flush();
+                return Mono.just(activity);
+            }
+            case DROP_NEWEST -> {
+                droppedCounter.increment();
+                flush();
+                return Mono.just(activity);
+            }
+            default -> {
+                writeThroughCounter.increment();
+                flush();
+                return mongoTemplate.save(activity)
+                    .flatMap(saved -> userActivityStatsService.record(List.of(saved)).thenReturn(saved));
+            }
+        }
+    }
+
+    private boolean enqueue(UserActivity activity) {
+        if (wal == null) {
+            return queue.offer(activity);
+        }
+        walLock.readLock().lock();
+        try {
+            if (!queue.offer(activity)) {
+                return false;
+            }
+            try {
+                wal.append(objectMapper.writeValueAsString(activity));
+            } catch (IOException e) {
+                // Still inserted with the next batch unless the process stops first
+                logger.warn("Failed to append activity to write-ahead log: {}", e.getMessage());
+            }
+            return true;
+        } finally {
+            walLock.readLock().unlock();
+        }
+    }
+
+    // Starts a flush unless one is running; the running one picks up whatever is queued
+    private void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        // Rotating the log syncs it to disk, which stays off the caller's thread
+        drain()
+            .subscribeOn(Schedulers.boundedElastic())
+            .onErrorResume(ex -> {
+                logger.error("Activity flush failed: {}", ex.getMessage(), ex);
+                return Mono.just(false);
+            })
+            .subscribe(allStored -> {
+                flushing.set(false);
+                // After a failure the requeued activities wait for the next flush interval
+                if (allStored && queue.size() >= batchSize) {
+                    flush();
+                }
+            });
+    }
+
+    /*
+     * Inserts everything queued when the drain starts, then drops the log
+     * segments covering it. Batches that cannot be stored are requeued, and
+     * their segments are carried over until a later drain stores everything.
+     * Emits whether everything was stored.
+     */
+    private Mono<Boolean> drain() {
+        return Mono.defer(() -> {
+            List<Path> segments = new ArrayList<>();
+            int pending;
+            if (wal != null) {
+                walLock.writeLock().lock();
+                try {
+                    pending = queue.size();
+                    if (pending == 0) {
+                        return Mono.just(true);
+                    }
+                    segments.addAll(carriedSegments);
+                    carriedSegments.clear();
+                    segments.addAll(wal.rotate());
+                } catch (IOException e) {
+                    logger.warn("Failed to rotate activity write-ahead log: {}", e.getMessage());
+                    pending = queue.size();
+                } finally {
+                    walLock.writeLock().unlock();
+                }
+            } else {
+                pending = queue.size();
+            }
+            if (pending == 0) {
+                return Mono.just(true);
+            }
+
+            int batches = (pending + batchSize - 1) / batchSize;
+            return Flux.range(0, batches)
+                .concatMap(i -> {
+                    List<UserActivity> batch = new ArrayList<>(batchSize);
+                    queue.drainTo(batch, batchSize);
+                    return insert(batch);
+                })
+                .reduce(Boolean::logicalAnd)
+                .map(allStored -> {
+                    if (allStored) {
+                        deleteSegments(segments);
+                    } else {
+                        carrySegments(segments);
+                    }
+                    return allStored;
+                });
+        });
+    }
+
+    /*
+     * Inserts a batch unordered, so one failing document does not stop the
+     * rest. Documents rejected as duplicates were stored by an earlier attempt
+     * whose reply was lost, and count as stored. Documents still failing after
+     * the retries are requeued. Emits whether the whole batch was stored.
+     */
+    private Mono<Boolean> insert(List<UserActivity> batch) {
+        if (batch.isEmpty()) {
+            return Mono.just(true);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<UserActivity> stored = new ArrayList<>(batch.size());
+        AtomicReference<List<UserActivity>> remaining = new AtomicReference<>(batch);
+        return Mono.defer(() -> insertUnordered(remaining.get(), stored)
+                .doOnNext(remaining::set)
+                .flatMap(failed -> failed.isEmpty()
+                    ? Mono.<Void>empty()
+                    : Mono.error(new IllegalStateException(failed.size() + " activities not inserted"))))
+            .retryWhen(Retry.backoff(INSERT_RETRIES, Duration.ofMillis(100)))
+            .then(Mono.fromCallable(() -> {
+                sample.stop(flushTimer);
+                return true;
+            }))
+            .onErrorResume(ex -> {
+                requeue(remaining.get());
+                logger.error("Failed to insert {} activities, retrying with the next flush: {}",
+                    remaining.get().size(), ex.getMessage());
+                return Mono.just(false);
+            })
+            .flatMap(allStored -> userActivityStatsService.record(stored).thenReturn(allStored));
+    }
+
+    // One insertMany attempt; adds the stored documents to stored and emits the ones that failed
+    private Mono<List<UserActivity>> insertUnordered(List<UserActivity> activities, List<UserActivity> stored) {
+        List<Document> documents = activities.stream()
+            .map(activity -> {
+                Document document = new Document();
+                mongoTemplate.getConverter().write(activity, document);
+                return document;
+            })
+            .toList();
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(UserActivity.class))
+            .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+            .map(result -> {
+                stored.addAll(activities);
+                return List.<UserActivity>of();
+            })
+            .onErrorResume(MongoBulkWriteException.class, ex -> {
+                Set<Integer> failedIndexes = new HashSet<>();
+                for (BulkWriteError error : ex.getWriteErrors()) {
+                    if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                        failedIndexes.add(error.getIndex());
+                    }
+                }
+                List<UserActivity> failed = new ArrayList<>();
+                for (int i = 0; i < activities.size(); i++) {
+                    (failedIndexes.contains(i) ? failed : stored).add(activities.get(i));
+                }
+                return Mono.just(failed);
+            });
+    }
+
+    // Puts activities back for the next drain; ones that no longer fit are only kept in the write-ahead log
+    private void requeue(List<UserActivity> activities) {
+        int lost = 0;
+        for (UserActivity activity : activities) {
+            if (!queue.offer(activity)) {
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            droppedCounter.increment(lost);
+            overflowedOnRequeue = true;
+            logger.error("Write buffer full, {} activities not requeued{}", lost,
+                wal != null ? ", kept in write-ahead log until restart" : "");
+        }
+    }
+
+    // Segments of activities requeued after a failed insert are dropped by the next drain that stores everything
+    private void carrySegments(List<Path> segments) {
+        walLock.writeLock().lock();
+        try {
+            if (overflowedOnRequeue) {
+                // Holds activities that are no longer queued, left for the replay on the next start
+                overflowedOnRequeue = false;
+            } else {
+                carriedSegments.addAll(segments);
+            }
+        } finally {
+            walLock.writeLock().unlock();
+        }
+    }
+
+    private void deleteSegments(List<Path> segments) {
+        try {
+            WriteAheadLog.delete(segments);
+        } catch (IOException e) {
+            logger.warn("Failed to delete activity write-ahead log segments: {}", e.getMessage());
+        }
+    }
+
+    // Activities a previous run logged but did not insert; ones it did insert are skipped by ID
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayWriteAheadLog() {
+        if (wal == null || wal.leftoverSegments().isEmpty()) {
+            return;
+        }
+        Flux.fromIterable(wal.leftoverSegments())
+            .concatMap(segment -> Mono.fromCallable(() -> WriteAheadLog.readLines(segment))
+                .flatMapMany(Flux::fromIterable)
+                .filter(line -> !line.isBlank())
+                .concatMap(line -> {
+                    try {
+                        return Mono.just(objectMapper.readValue(line, UserActivity.class));
+                    } catch (JsonProcessingException e) {
+                        // A torn last line from a crash mid-append
+                        logger.warn("Skipping unreadable activity in {}: {}", segment, e.getMessage());
+                        return Mono.empty();
+                    }
+                })
+                .concatMap(activity -> mongoTemplate.insert(activity)
+                    .onErrorResume(DuplicateKeyException.class, ex -> Mono.empty()))
+                .collectList()
+                .flatMap(inserted -> userActivityStatsService.record(inserted).thenReturn(inserted.size()))
+                .doOnNext(count -> logger.info("Replayed {} activities from {}", count, segment))
+                .then(Mono.fromRunnable(() -> deleteSegments(List.of(segment)))))
+            .subscribe(null, ex -> logger.error("Failed to replay activity write-ahead log: {}", ex.getMessage(), ex));
+    }
+}
@@ -4,8 +4,9 @@ import com.example.jwtdemo.model.User;
 import com.example.jwtdemo.model.UserRole;
 import com.example.jwtdemo.repository.UserRepository;
 import com.example.jwtdemo.util.JwtUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -16,21 +17,31 @@ import java.util.Map;
 
 @Service
 public class UserService {
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
     public Mono<User> registerUser(User user) {
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        user.setActive(true);
-        user.setCreatedAt(LocalDateTime.now().toString());
-        return userRepository.save(user);
+        return passwordHashingService.encode(user.getPassword())
+                .flatMap(encoded -> {
+                    user.setPassword(encoded);
+                    user.setActive(true);
+                    user.setCreatedAt(LocalDateTime.now().toString());
+                    return userRepository.save(user);
+                });
     }
 
     public Mono<User> findByEmail(String email) {
@@ -49,11 +60,27 @@ public class UserService {
         return userRepository.findAll();
     }
 
+    /**
+     * Activates or deactivates a user. Any status change bumps the user's token
+     * version, which invalidates every token issued to the user so far. The
+     * version is saved with the user; other instances are told over Redis and
+     * otherwise pick it up with their next reload.
+     */
     public Mono<User> updateUserStatus(String userId, boolean active) {
         return userRepository.findById(userId)
                 .flatMap(user -> {
                     user.setActive(active);
+                    user.setTokenVersion(user.getTokenVersion() + 1);
                     return userRepository.save(user);
+                })
+                .flatMap(user -> {
+                    tokenVersionCache.update(user.getEmail(), user.getTokenVersion());
+                    return tokenService.publishTokenVersion(user.getEmail(), user.getTokenVersion())
+                            .onErrorResume(ex -> {
+                                logger.warn("Failed to publish token version of {}: {}", user.getEmail(), ex.getMessage());
+                                return Mono.empty();
+                            })
+                            .thenReturn(user);
                 });
     }
 
@@ -0,0 +1,65 @@
+package com.example.jwtdemo.util;
+
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over SHA-256 hex digests, such as the token hashes from
+ * {@link JwtUtil#hashToken(String)}. The digests are already uniformly
+ * distributed, so the bit positions are derived from them by double hashing
+ * instead of hashing again. Safe for concurrent use; elements cannot be removed.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedElements Number of elements the filter is sized for.
+     * @param falsePositiveRate Target false positive rate at that size.
+     */
+    public BloomFilter(long expectedElements, double falsePositiveRate) {
+        long n = Math.max(1, expectedElements);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, m);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+    public void add(String sha256Hex) {
+        long[] hashes = hashes(sha256Hex);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = position(hashes, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    // False means definitely absent, true means possibly present
+    public boolean mightContain(String sha256Hex) {
+        long[] hashes = hashes(sha256Hex);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = position(hashes, i);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long position(long[] hashes, int i) {
+        return Math.floorMod(hashes[0] + i * hashes[1], bitCount);
+    }
+
+    private static long[] hashes(String sha256Hex) {
+        long first = HexFormat.fromHexDigitsToLong(sha256Hex, 0, 16);
+        // Forcing the step odd keeps it from being zero
+        long second = HexFormat.fromHexDigitsToLong(sha256Hex, 16, 32) | 1;
+        return new long[] { first, second };
+    }
+}
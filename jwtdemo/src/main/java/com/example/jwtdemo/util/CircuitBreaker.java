@@ -0,0 +1,82 @@
+package com.example.jwtdemo.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Minimal circuit breaker. It opens after a run of consecutive failures and
+ * then rejects calls for the open duration, after which a single probe call
+ * is let through; the probe's outcome closes the breaker or opens it again.
+ * Lock-free, times are {@link System#nanoTime()} values.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    // When the breaker last opened, or when the current probe started
+    private final AtomicLong since = new AtomicLong();
+
+    public CircuitBreaker(int failureThreshold, long openNanos) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openNanos;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Tells whether a call may go through. While half open only one probe is
+     * let through; a probe that never reports back is replaced after another
+     * open duration.
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        long now = System.nanoTime();
+        long started = since.get();
+        if (now - started < openNanos) {
+            return false;
+        }
+        // Whoever moves the timestamp first becomes the probe, or replaces a stale one
+        if (!since.compareAndSet(started, now)) {
+            return false;
+        }
+        if (current == State.OPEN) {
+            state.compareAndSet(State.OPEN, State.HALF_OPEN);
+        }
+        return true;
+    }
+
+    /**
+     * @return true when this success closed an open breaker.
+     */
+    public boolean onSuccess() {
+        consecutiveFailures.set(0);
+        State current = state.get();
+        return current != State.CLOSED && state.compareAndSet(current, State.CLOSED);
+    }
+
+    /**
+     * @return true when this failure opened the breaker.
+     */
+    public boolean onFailure() {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            since.set(System.nanoTime());
+            return state.compareAndSet(State.HALF_OPEN, State.OPEN);
+        }
+        if (current == State.CLOSED && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            since.set(System.nanoTime());
+            return state.compareAndSet(State.CLOSED, State.OPEN);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.jwtdemo.util;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+/**
+ * Streaming content encoding used for stored project files. The encoding name
+ * is the HTTP Content-Encoding token, so encoded content can be served as is.
+ */
+public interface ContentCodec {
+
+    String getEncoding();
+
+    /**
+     * Encodes a stream of buffers. Input buffers are released once consumed.
+     */
+    Flux<DataBuffer> encode(Flux<DataBuffer> content);
+
+    /**
+     * Decodes a stream of buffers. Input buffers are released once consumed.
+     */
+    Flux<DataBuffer> decode(Flux<DataBuffer> content);
+
+    /**
+     * Encoded size of a sample, used to measure how well content compresses.
+     */
+    int encodedSize(DataBuffer sample);
+}
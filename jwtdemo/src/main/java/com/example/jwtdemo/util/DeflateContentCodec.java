@@ -0,0 +1,125 @@
+package com.example.jwtdemo.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * zlib "deflate" codec backed by the JDK Deflater and Inflater.
+ */
+@Component
+public class DeflateContentCodec implements ContentCodec {
+    private static final int OUTPUT_BUFFER_SIZE = 16384;
+
+    @Value("${storage.compression.level:6}")
+    private int level;
+
+    @Override
+    public String getEncoding() {
+        return "deflate";
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Flux<DataBuffer> content) {
+        return Flux.defer(() -> {
+            Deflater deflater = new Deflater(level);
+            return content
+                .concatMapIterable(dataBuffer -> {
+                    setInput(dataBuffer, deflater::setInput);
+                    return drain(deflater);
+                })
+                .concatWith(Flux.defer(() -> {
+                    deflater.finish();
+                    return Flux.fromIterable(drain(deflater));
+                }))
+                .doFinally(signal -> deflater.end());
+        });
+    }
+
+    @Override
+    public Flux<DataBuffer> decode(Flux<DataBuffer> content) {
+        return Flux.defer(() -> {
+            Inflater inflater = new Inflater();
+            return content
+                .concatMapIterable(dataBuffer -> {
+                    setInput(dataBuffer, inflater::setInput);
+                    return inflate(inflater);
+                })
+                .doFinally(signal -> inflater.end());
+        });
+    }
+
+    @Override
+    public int encodedSize(DataBuffer sample) {
+        Deflater deflater = new Deflater(level);
+        try {
+            byte[] output = new byte[OUTPUT_BUFFER_SIZE];
+            try (DataBuffer.ByteBufferIterator buffers = sample.readableByteBuffers()) {
+                buffers.forEachRemaining(buffer -> {
+                    deflater.setInput(buffer);
+                    while (!deflater.needsInput()) {
+                        deflater.deflate(output);
+                    }
+                });
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflater.deflate(output);
+            }
+            return (int) deflater.getBytesWritten();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // Copies the readable bytes into the codec, which keeps a reference to its input
+    private static void setInput(DataBuffer dataBuffer, Consumer<ByteBuffer> sink) {
+        try {
+            byte[] input = new byte[dataBuffer.readableByteCount()];
+            dataBuffer.read(input);
+            sink.accept(ByteBuffer.wrap(input));
+        } finally {
+            DataBufferUtils.release(dataBuffer);
+        }
+    }
+
+    private static List<DataBuffer> drain(Deflater deflater) {
+        List<DataBuffer> output = new ArrayList<>();
+        byte[] chunk = new byte[OUTPUT_BUFFER_SIZE];
+        int length;
+        while ((length = deflater.deflate(chunk)) > 0) {
+            output.add(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOf(chunk, length)));
+        }
+        return output;
+    }
+
+    private static List<DataBuffer> inflate(Inflater inflater) {
+        List<DataBuffer> output = new ArrayList<>();
+        byte[] chunk = new byte[OUTPUT_BUFFER_SIZE];
+        try {
+            while (!inflater.finished() && !inflater.needsInput()) {
+                int length = inflater.inflate(chunk);
+                if (length > 0) {
+                    output.add(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOf(chunk, length)));
+                } else if (inflater.needsDictionary()) {
+                    throw new IllegalStateException("Unsupported deflate stream");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt deflate stream", e);
+        }
+        return output;
+    }
+}
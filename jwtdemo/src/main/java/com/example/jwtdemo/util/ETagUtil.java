@@ -0,0 +1,85 @@
+package com.example.jwtdemo.util;
+
+import com.example.jwtdemo.model.Project;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+
+/**
+ * Validators for conditional requests on project resources. They are computed
+ * from project metadata only, so a request can be answered with 304 Not Modified
+ * before any file content is loaded.
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    /**
+     * Builds a strong ETag from the project's last update and the content hash of
+     * each of its files. Additional parts, such as related documents rendered into
+     * the same response, are folded into the tag as well.
+     *
+     * @param project Project summary, file bytes are not needed.
+     * @param extraParts Other values the response depends on.
+     * @return Quoted ETag value.
+     */
+    public static String projectETag(Project project, String... extraParts) {
+        MessageDigest digest = newSha256Digest();
+        update(digest, project.getId());
+        update(digest, project.getUpdatedAt());
+        if (project.getFiles() != null) {
+            for (Project.ProjectFile file : project.getFiles()) {
+                update(digest, file.getFilename());
+                // Legacy inline files have no content hash, their size is the best cheap proxy
+                update(digest, file.getSha256() != null ? file.getSha256()
+                    : file.getFileId() != null ? file.getFileId() : String.valueOf(file.getSize()));
+            }
+        }
+        for (String part : extraParts) {
+            update(digest, part);
+        }
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    /**
+     * Returns the project's last update time truncated to seconds, the precision of
+     * HTTP dates, or null when it is unknown.
+     */
+    public static Instant lastModified(Project project) {
+        if (project.getUpdatedAt() == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(project.getUpdatedAt())
+                .atZone(ZoneId.systemDefault())
+                .toInstant()
+                .truncatedTo(ChronoUnit.SECONDS);
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        // Separator so that adjacent values cannot run into each other
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
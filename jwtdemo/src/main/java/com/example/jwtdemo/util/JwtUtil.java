@@ -1,49 +1,153 @@
 package com.example.jwtdemo.util;
 
+import com.example.jwtdemo.model.UserRole;
+import com.example.jwtdemo.service.JwtKeyService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
+    // Claims carried next to the subject so requests are authorized without a user lookup
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+    public static final String VERSION_CLAIM = "ver";
+
+    private static final ObjectMapper HEADER_MAPPER = new ObjectMapper();
+
+    @Autowired
+    private JwtKeyService jwtKeyService;
+
+    // Only verifies tokens issued before signing moved to the key ring, they carry no kid
+    @Value("${jwt.secret:}")
     private String secret;
 
+    @Value("${jwt.hmac.accept-legacy:true}")
+    private boolean acceptLegacyHmac;
+
     @Value("${jwt.expiration}")
     private long expiration;
 
-    private Key signingKey;
+    @Value("${jwt.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    private Key legacyHmacKey;
+
+    private JwtParser parser;
+
+    // Claims of tokens whose signature was already verified, keyed by token hash
+    private Cache<String, Claims> verifiedClaims;
 
     @PostConstruct
     public void init() {
-        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        if (acceptLegacyHmac && !secret.isBlank()) {
+            this.legacyHmacKey = Keys.hmacShaKeyFor(secret.getBytes());
+        }
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    // jjwt 0.11 declares the raw JwsHeader, a JwsHeader<?> parameter would not override it
+                    @Override
+                    @SuppressWarnings("rawtypes")
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return verificationKey(header.getKeyId());
+                    }
+                })
+                .build();
+        // Entries live until their token expires, so an expired token is never served from the cache
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        if (claims.getExpiration() == null) {
+                            return Long.MAX_VALUE;
+                        }
+                        long remainingMillis = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMillis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, claims, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
-    // Generate token
-    public String generateToken(String username) {
+    // Generate token, version is the user's token version at issue time
+    public String generateToken(String username, String userId, UserRole role, long version) {
+        JwtKeyService.SigningKey key = jwtKeyService.signingKey();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, key.kid())
                 .setSubject(username)
+                .claim(USER_ID_CLAIM, userId)
+                .claim(ROLE_CLAIM, role.name())
+                .claim(VERSION_CLAIM, version)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(signingKey, SignatureAlgorithm.HS512)
+                .signWith(key.privateKey(), JwtKeyService.ALGORITHM)
                 .compact();
     }
 
-    // Extract claims from token
+    // Extract claims from token, the signature is verified once per token and then cached
     public Claims extractClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(signingKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        String tokenHash = hashToken(token);
+        Claims claims = verifiedClaims.getIfPresent(tokenHash);
+        if (claims == null) {
+            claims = parser.parseClaimsJws(token).getBody();
+            verifiedClaims.put(tokenHash, claims);
+        } else if (isExpired(claims)) {
+            // The cache evicts lazily, an entry can outlive its token by a moment
+            throw new ExpiredJwtException(null, claims, "JWT expired at " + claims.getExpiration());
+        }
+        return claims;
+    }
+
+    /**
+     * Verifies a token like {@link #extractClaims(String)}, first loading the
+     * public key of its kid when this instance has not seen the kid yet. Use it
+     * where a token may be signed by another instance's key.
+     */
+    public Mono<Claims> verifyClaims(String token) {
+        return Mono.defer(() -> {
+            String kid = keyId(token);
+            if (kid == null || jwtKeyService.cachedVerificationKey(kid) != null) {
+                return Mono.fromCallable(() -> extractClaims(token));
+            }
+            return jwtKeyService.verificationKey(kid)
+                    .then(Mono.fromCallable(() -> extractClaims(token)));
+        });
     }
 
     // Extract username (subject) from token
@@ -51,15 +155,69 @@ public class JwtUtil {
         return extractClaims(token).getSubject();
     }
 
+    // Role claim of the token, null for tokens issued without one
+    public static UserRole extractRole(Claims claims) {
+        String role = claims.get(ROLE_CLAIM, String.class);
+        try {
+            return role == null ? null : UserRole.valueOf(role);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Version claim of the token, tokens issued without one are on version 0
+    public static long extractVersion(Claims claims) {
+        Number version = claims.get(VERSION_CLAIM, Number.class);
+        return version == null ? 0 : version.longValue();
+    }
+
     // Validate token
     public boolean isTokenValid(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return extractedUsername.equals(username) && !isTokenExpired(token);
+        final Claims claims = extractClaims(token);
+        return claims.getSubject().equals(username) && !isExpired(claims);
+    }
+
+    // SHA-256 of a token, used wherever a token is stored or looked up so the raw token is not kept around
+    public static String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Key verificationKey(String kid) {
+        if (kid == null) {
+            if (legacyHmacKey == null) {
+                throw new UnsupportedJwtException("Token has no key id");
+            }
+            return legacyHmacKey;
+        }
+        Key key = jwtKeyService.cachedVerificationKey(kid);
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown token signing key " + kid);
+        }
+        return key;
+    }
+
+    // Key id from the header of a token, read before the signature is checked
+    private static String keyId(String token) {
+        int end = token.indexOf('.');
+        if (end < 0) {
+            return null;
+        }
+        try {
+            JsonNode header = HEADER_MAPPER.readTree(Base64.getUrlDecoder().decode(token.substring(0, end)));
+            JsonNode kid = header.get(JwsHeader.KEY_ID);
+            return kid != null && kid.isTextual() ? kid.asText() : null;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
     }
 
     // Check if token is expired
-    private boolean isTokenExpired(String token) {
-        final Date expiration = extractClaims(token).getExpiration();
-        return expiration.before(new Date());
+    private boolean isExpired(Claims claims) {
+        return claims.getExpiration() != null && claims.getExpiration().before(new Date());
     }
 }
@@ -0,0 +1,94 @@
+package com.example.jwtdemo.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded in-memory key-value store whose entries expire individually, the
+ * local stand-in for Redis keys with a TTL. When full, the entries least
+ * likely to be used again are evicted first.
+ */
+public class LocalTtlStore<V> {
+
+    private record Timed<V>(V value, long expiresAt) {}
+
+    /**
+     * A stored value with the time it has left.
+     */
+    public record Entry<V>(V value, Duration remaining) {}
+
+    private final Cache<String, Timed<V>> entries;
+
+    public LocalTtlStore(long maxEntries) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<String, Timed<V>>() {
+                    @Override
+                    public long expireAfterCreate(String key, Timed<V> entry, long currentTime) {
+                        return Math.max(0, entry.expiresAt() - System.nanoTime());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Timed<V> entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Timed<V> entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public void put(String key, V value, Duration ttl) {
+        entries.put(key, new Timed<>(value, System.nanoTime() + ttl.toNanos()));
+    }
+
+    // Null when absent or expired
+    public V get(String key) {
+        Timed<V> entry = entries.getIfPresent(key);
+        return entry == null || entry.expiresAt() - System.nanoTime() <= 0 ? null : entry.value();
+    }
+
+    /**
+     * Atomically replaces the value of a key and restarts its TTL.
+     *
+     * @param update Gets the current value, or null when absent, and returns the new value.
+     */
+    public V compute(String key, Duration ttl, UnaryOperator<V> update) {
+        long now = System.nanoTime();
+        Timed<V> updated = entries.asMap().compute(key, (k, current) -> {
+            V value = current == null || current.expiresAt() - now <= 0 ? null : current.value();
+            return new Timed<>(update.apply(value), now + ttl.toNanos());
+        });
+        return updated.value();
+    }
+
+    public void remove(String key) {
+        entries.invalidate(key);
+    }
+
+    // Removes the key only while it still maps to the given value
+    public void remove(String key, V value) {
+        entries.asMap().computeIfPresent(key, (k, current) -> current.value() == value ? null : current);
+    }
+
+    public Map<String, Entry<V>> snapshot() {
+        long now = System.nanoTime();
+        Map<String, Entry<V>> snapshot = new HashMap<>();
+        entries.asMap().forEach((key, entry) -> {
+            long remaining = entry.expiresAt() - now;
+            if (remaining > 0) {
+                snapshot.put(key, new Entry<>(entry.value(), Duration.ofNanos(remaining)));
+            }
+        });
+        return snapshot;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.jwtdemo.util;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Picks password hashing work factors that take about a target time on the
+ * current hardware. Work is measured once at a small factor and extrapolated,
+ * since BCrypt time doubles per cost step and Argon2 time grows linearly with
+ * iterations. The result never drops below the given minimum, so a fast
+ * target cannot weaken hashes.
+ */
+public final class PasswordEncoderCalibrator {
+
+    private static final String SAMPLE_PASSWORD = "calibration-Password-1";
+    private static final int SAMPLES = 3;
+    private static final int MAX_BCRYPT_STRENGTH = 16;
+    private static final int MAX_ARGON2_ITERATIONS = 32;
+
+    private PasswordEncoderCalibrator() {
+    }
+
+    public static int bcryptStrength(long targetMillis, int minStrength) {
+        int measuredStrength = Math.max(4, Math.min(minStrength, 10));
+        double millis = measure(new BCryptPasswordEncoder(measuredStrength));
+        int extra = (int) Math.floor(Math.log(targetMillis / millis) / Math.log(2));
+        return Math.max(minStrength, Math.min(MAX_BCRYPT_STRENGTH, measuredStrength + extra));
+    }
+
+    public static int argon2Iterations(int memoryKib, long targetMillis, int minIterations) {
+        double millis = measure(new Argon2PasswordEncoder(16, 32, 1, memoryKib, 1));
+        int iterations = (int) Math.floor(targetMillis / millis);
+        return Math.max(minIterations, Math.min(MAX_ARGON2_ITERATIONS, iterations));
+    }
+
+    // Fastest of a few runs after a warm-up, in milliseconds
+    private static double measure(PasswordEncoder encoder) {
+        encoder.encode(SAMPLE_PASSWORD);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Math.max(best, 1) / 1_000_000.0;
+    }
+}
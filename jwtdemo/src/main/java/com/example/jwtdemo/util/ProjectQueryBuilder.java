@@ -0,0 +1,176 @@
+package com.example.jwtdemo.util;
+
+import com.example.jwtdemo.model.Project;
+import com.example.jwtdemo.model.ProjectStatus;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Turns project search filters into a single Mongo query so filtering, sorting
+ * and paging run in the database. Keywords use the projects text index and
+ * results are ordered by text score; without a keyword the newest projects come
+ * first. Queries only return project summaries.
+ */
+public class ProjectQueryBuilder {
+
+    private final List<Criteria> filters = new ArrayList<>();
+    private String keyword;
+    private boolean useTextIndex = true;
+    private int page;
+    private int size;
+
+    /**
+     * Keeps projects using any, or with matchAll all, of the given technologies.
+     * Technologies are compared by {@link Project#technologyKey}, like the
+     * in-memory search index does.
+     */
+    public ProjectQueryBuilder technologies(Collection<String> technologies, boolean matchAll) {
+        List<String> keys = technologies == null ? List.of() : technologies.stream()
+            .map(Project::technologyKey)
+            .filter(Objects::nonNull)
+            .distinct()
+            .toList();
+        if (!keys.isEmpty()) {
+            filters.add(matchAll
+                ? where("technologyKeys").all(keys)
+                : where("technologyKeys").in(keys));
+        }
+        return this;
+    }
+
+    /**
+     * Keeps projects matching the keyword. With the text index the keyword is a
+     * $text search, otherwise a case-insensitive substring match on name and
+     * description, which cannot use an index.
+     */
+    public ProjectQueryBuilder keyword(String keyword, boolean useTextIndex) {
+        this.keyword = keyword == null || keyword.isBlank() ? null : keyword.trim();
+        this.useTextIndex = useTextIndex;
+        return this;
+    }
+
+    public ProjectQueryBuilder status(ProjectStatus status) {
+        if (status != null) {
+            filters.add(where("status").is(status));
+        }
+        return this;
+    }
+
+    public ProjectQueryBuilder visibility(String visibility) {
+        if (visibility != null && !visibility.isBlank()) {
+            filters.add(where("visibility").is(visibility));
+        }
+        return this;
+    }
+
+    /**
+     * Keeps projects created from the first instant, inclusive, up to the
+     * second, exclusive. Either bound may be null. createdAt is stored as an ISO
+     * local date-time string, so string order is time order.
+     */
+    public ProjectQueryBuilder createdBetween(LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null) {
+            filters.add(where("createdAt").gte(from.toString()).lt(to.toString()));
+        } else if (from != null) {
+            filters.add(where("createdAt").gte(from.toString()));
+        } else if (to != null) {
+            filters.add(where("createdAt").lt(to.toString()));
+        }
+        return this;
+    }
+
+    public ProjectQueryBuilder page(int page, int size) {
+        this.page = page;
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * Builds the query for one page of project summaries.
+     */
+    public Query build() {
+        Query query = buildCount();
+        if (query instanceof TextQuery textQuery) {
+            textQuery.sortByScore();
+        } else {
+            query.with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"));
+        }
+        if (size > 0) {
+            query.skip((long) page * size).limit(size);
+        }
+        query.fields().exclude("files.data");
+        return query;
+    }
+
+    /**
+     * Builds the query matching all results, without sort or paging.
+     */
+    public Query buildCount() {
+        Query query = keyword != null && useTextIndex
+            ? TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(keyword))
+            : new Query();
+        Criteria filter = filter();
+        if (filter != null) {
+            query.addCriteria(filter);
+        }
+        return query;
+    }
+
+    /**
+     * Builds an aggregation counting matching projects per technology key, most
+     * frequent first, yielding documents of the form
+     * { _id: key, label: first spelling seen, count: n }.
+     */
+    public Aggregation technologyCounts(int limit) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        // $text has to be part of the first stage
+        if (keyword != null && useTextIndex) {
+            operations.add(Aggregation.match(TextCriteria.forDefaultLanguage().matching(keyword)));
+        }
+        Criteria filter = filter();
+        if (filter != null) {
+            operations.add(Aggregation.match(filter));
+        }
+        operations.add(Aggregation.unwind("technologies"));
+        // Once per project and key, a project may list a technology under several spellings
+        Document trimmed = new Document("$trim", new Document("input", "$technologies"));
+        operations.add(context -> new Document("$group",
+            new Document("_id", new Document("project", "$_id").append("key", new Document("$toLower", trimmed)))
+                .append("label", new Document("$first", trimmed))));
+        operations.add(context -> new Document("$group", new Document("_id", "$_id.key")
+            .append("label", new Document("$first", "$label"))
+            .append("count", new Document("$sum", 1))));
+        // Raw stages, the fields grouped above are not Project properties
+        operations.add(context -> new Document("$match", new Document("_id", new Document("$ne", ""))));
+        operations.add(context -> new Document("$sort", new Document("count", -1).append("_id", 1)));
+        operations.add(Aggregation.limit(limit));
+        return Aggregation.newAggregation(operations);
+    }
+
+    private Criteria filter() {
+        List<Criteria> criteria = new ArrayList<>(filters);
+        if (keyword != null && !useTextIndex) {
+            Pattern pattern = Pattern.compile(Pattern.quote(keyword), Pattern.CASE_INSENSITIVE);
+            criteria.add(new Criteria().orOperator(where("name").regex(pattern), where("description").regex(pattern)));
+        }
+        if (criteria.isEmpty()) {
+            return null;
+        }
+        return criteria.size() == 1 ? criteria.get(0) : new Criteria().andOperator(criteria);
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.jwtdemo.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prefix trie for typeahead suggestions. Every node caches the most popular
+ * suggestions found below it, so a lookup walks the prefix and returns that
+ * cache without visiting the subtree. Popularity is a reference count: adding
+ * the same suggestion again increments it and removing decrements it.
+ * <p>
+ * Suggestions are reachable from the start of every word they contain, so
+ * "Spring Boot" is found for both "spr" and "boo". Children are kept in sorted
+ * parallel arrays to keep nodes small. The trie is not thread safe.
+ */
+public class SuggestionTrie {
+
+    private static final Comparator<Suggestion> BY_POPULARITY =
+        Comparator.comparingInt(Suggestion::getCount).reversed()
+            .thenComparing(Suggestion::getText, String.CASE_INSENSITIVE_ORDER);
+
+    private final int topK;
+    private final Node root = new Node();
+
+    public static class Suggestion {
+        private final String text;
+        private final String type;
+        private int count;
+
+        Suggestion(String text, String type) {
+            this.text = text;
+            this.type = type;
+        }
+
+        public String getText() { return text; }
+        public String getType() { return type; }
+        public int getCount() { return count; }
+    }
+
+    private static class Node {
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        // Suggestions whose key ends here, usually just one
+        List<Suggestion> terminals;
+        Suggestion[] best = new Suggestion[0];
+
+        Node child(char label) {
+            int position = Arrays.binarySearch(labels, label);
+            return position >= 0 ? children[position] : null;
+        }
+
+        Node addChild(char label) {
+            int position = Arrays.binarySearch(labels, label);
+            if (position >= 0) {
+                return children[position];
+            }
+            position = -position - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, position);
+            System.arraycopy(children, 0, newChildren, 0, position);
+            System.arraycopy(labels, position, newLabels, position + 1, labels.length - position);
+            System.arraycopy(children, position, newChildren, position + 1, children.length - position);
+            Node child = new Node();
+            newLabels[position] = label;
+            newChildren[position] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int position = Arrays.binarySearch(labels, label);
+            if (position < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, position);
+            System.arraycopy(children, 0, newChildren, 0, position);
+            System.arraycopy(labels, position + 1, newLabels, position, labels.length - position - 1);
+            System.arraycopy(children, position + 1, newChildren, position, children.length - position - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return labels.length == 0 && (terminals == null || terminals.isEmpty());
+        }
+    }
+
+    /**
+     * @param topK Number of suggestions cached per node, the maximum a lookup returns.
+     */
+    public SuggestionTrie(int topK) {
+        this.topK = topK;
+    }
+
+    /**
+     * Counts one more use of a suggestion, adding it if it is new.
+     *
+     * @param text Suggestion as displayed.
+     * @param type Kind of suggestion, suggestions with the same text but another type are distinct.
+     */
+    public void add(String text, String type) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        String key = normalize(text);
+        Suggestion suggestion = find(key, text, type);
+        if (suggestion == null) {
+            suggestion = new Suggestion(text.trim(), type);
+            for (String wordKey : wordKeys(key)) {
+                Node node = root;
+                for (int i = 0; i < wordKey.length(); i++) {
+                    node = node.addChild(wordKey.charAt(i));
+                }
+                if (node.terminals == null) {
+                    node.terminals = new ArrayList<>(1);
+                }
+                node.terminals.add(suggestion);
+            }
+        }
+        suggestion.count++;
+        for (String wordKey : wordKeys(key)) {
+            updatePath(wordKey);
+        }
+    }
+
+    /**
+     * Counts one less use of a suggestion, dropping it when no use is left.
+     */
+    public void remove(String text, String type) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        String key = normalize(text);
+        Suggestion suggestion = find(key, text, type);
+        if (suggestion == null) {
+            return;
+        }
+        suggestion.count--;
+        for (String wordKey : wordKeys(key)) {
+            if (suggestion.count <= 0) {
+                Node node = root;
+                for (int i = 0; i < wordKey.length(); i++) {
+                    node = node.child(wordKey.charAt(i));
+                }
+                node.terminals.remove(suggestion);
+            }
+            updatePath(wordKey);
+        }
+    }
+
+    /**
+     * Returns the most popular suggestions starting with the prefix, at a word
+     * boundary, most popular first.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        Node node = root;
+        String key = normalize(prefix);
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null || key.isEmpty()) {
+            return List.of();
+        }
+        Suggestion[] best = node.best;
+        return List.of(Arrays.copyOf(best, Math.min(limit, best.length)));
+    }
+
+    private Suggestion find(String key, String text, String type) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null || node.terminals == null) {
+            return null;
+        }
+        for (Suggestion suggestion : node.terminals) {
+            if (suggestion.type.equals(type) && suggestion.text.equalsIgnoreCase(text.trim())) {
+                return suggestion;
+            }
+        }
+        return null;
+    }
+
+    // Recomputes the cached top suggestions bottom-up along a key, pruning empty nodes
+    private void updatePath(String key) {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].child(key.charAt(i));
+        }
+        for (int depth = key.length(); depth >= 0; depth--) {
+            Node node = path[depth];
+            if (depth > 0 && node.isEmpty()) {
+                path[depth - 1].removeChild(key.charAt(depth - 1));
+                continue;
+            }
+            List<Suggestion> best = new ArrayList<>(topK + 1);
+            if (node.terminals != null) {
+                node.terminals.forEach(suggestion -> offer(best, suggestion));
+            }
+            for (Node child : node.children) {
+                // Each child's list is sorted, so the rest of it cannot make the cut either
+                for (Suggestion suggestion : child.best) {
+                    if (!offer(best, suggestion)) {
+                        break;
+                    }
+                }
+            }
+            node.best = best.toArray(new Suggestion[0]);
+        }
+    }
+
+    // Inserts into a sorted list bounded by topK, false when the suggestion ranks below a full list
+    private boolean offer(List<Suggestion> best, Suggestion suggestion) {
+        if (best.size() == topK && BY_POPULARITY.compare(suggestion, best.get(topK - 1)) >= 0) {
+            return false;
+        }
+        // A suggestion can be reachable through several of its words
+        if (best.contains(suggestion)) {
+            return true;
+        }
+        int position = 0;
+        while (position < best.size() && BY_POPULARITY.compare(best.get(position), suggestion) <= 0) {
+            position++;
+        }
+        best.add(position, suggestion);
+        if (best.size() > topK) {
+            best.remove(topK);
+        }
+        return true;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // The whole key and every suffix that starts a word
+    private static List<String> wordKeys(String key) {
+        List<String> keys = new ArrayList<>();
+        keys.add(key);
+        for (int i = 1; i < key.length(); i++) {
+            if (!Character.isLetterOrDigit(key.charAt(i - 1)) && Character.isLetterOrDigit(key.charAt(i))) {
+                keys.add(key.substring(i));
+            }
+        }
+        return keys;
+    }
+}
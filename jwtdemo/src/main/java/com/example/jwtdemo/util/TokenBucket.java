@@ -0,0 +1,70 @@
+package com.example.jwtdemo.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. It is kept as the generic cell rate algorithm: a
+ * single theoretical arrival time that each token pushes forward by the
+ * refill interval, which behaves exactly like a bucket refilling at the given
+ * rate up to its capacity but updates with one CAS. Times are
+ * {@link System#nanoTime()} values.
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    // Tokens taken locally since the last drainUnsynced
+    private final AtomicLong unsynced = new AtomicLong();
+
+    /**
+     * @param ratePerSecond Tokens added per second.
+     * @param capacity Tokens the bucket holds when full, the allowed burst.
+     */
+    public TokenBucket(double ratePerSecond, int capacity, long now) {
+        if (!(ratePerSecond > 0) || Double.isInfinite(ratePerSecond)) {
+            throw new IllegalArgumentException("Token bucket rate must be positive: " + ratePerSecond);
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / ratePerSecond));
+        this.burstNanos = Math.multiplyExact(intervalNanos, (long) Math.max(1, capacity));
+        this.theoreticalArrival = new AtomicLong(now);
+    }
+
+    /**
+     * Takes one token if available.
+     *
+     * @return 0 when the token was taken, otherwise nanoseconds until one is available.
+     */
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                unsynced.incrementAndGet();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Removes tokens taken elsewhere, e.g. by other instances. The bucket can
+     * go at most one full burst into debt, so a burst on another node delays
+     * this one by a bounded time.
+     */
+    public void consume(long tokens, long now) {
+        if (tokens <= 0) {
+            return;
+        }
+        long debt = Math.min(tokens, 2 * burstNanos / intervalNanos) * intervalNanos;
+        theoreticalArrival.updateAndGet(current -> Math.min(Math.max(current, now) + debt, now + 2 * burstNanos));
+    }
+
+    public long drainUnsynced() {
+        return unsynced.getAndSet(0);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.jwtdemo.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of text lines split into numbered segment files. Writers
+ * append to the current segment; {@link #rotate()} starts a new one and
+ * hands back the finished segments, which the owner deletes once their
+ * entries are stored elsewhere. Segments left behind by a previous run are
+ * listed by {@link #leftoverSegments()} for replay.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final String SUFFIX = ".wal";
+
+    private final Path directory;
+    private final List<Path> leftovers;
+    private final List<Path> finished = new ArrayList<>();
+    private long segmentNumber;
+    private Path segment;
+    private volatile FileChannel channel;
+
+    public WriteAheadLog(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            this.leftovers = files
+                .filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                .sorted(Comparator.comparingLong(WriteAheadLog::segmentNumber))
+                .toList();
+        }
+        this.segmentNumber = leftovers.isEmpty() ? 0 : segmentNumber(leftovers.get(leftovers.size() - 1));
+        openNextSegment();
+    }
+
+    public List<Path> leftoverSegments() {
+        return leftovers;
+    }
+
+    /**
+     * Appends a line, which must not contain line breaks. Safe to call from
+     * several threads; not safe to call concurrently with {@link #rotate()}.
+     */
+    public void append(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        // An APPEND channel writes each buffer at the end of the file as a whole
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Flushes the current segment to the storage device.
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Closes the current segment and starts a new one.
+     *
+     * @return Segments finished since the last rotation, including the one just closed.
+     */
+    public List<Path> rotate() throws IOException {
+        channel.force(false);
+        channel.close();
+        finished.add(segment);
+        openNextSegment();
+        List<Path> rotated = List.copyOf(finished);
+        finished.clear();
+        return rotated;
+    }
+
+    public static List<String> readLines(Path segment) throws IOException {
+        return Files.readAllLines(segment, StandardCharsets.UTF_8);
+    }
+
+    public static void delete(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentNumber++;
+        segment = directory.resolve(String.format("%020d%s", segmentNumber, SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
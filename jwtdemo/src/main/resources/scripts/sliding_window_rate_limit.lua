@@ -0,0 +1,29 @@
+-- Sliding window log rate limiter, run atomically in one round-trip.
+-- KEYS[1]  sorted set of attempt timestamps for one action and caller
+-- ARGV[1]  window in milliseconds
+-- ARGV[2]  attempts allowed within the window
+-- ARGV[3]  unique member for this attempt
+-- Returns { allowed (1/0), remaining attempts, milliseconds until the next attempt is allowed }
+local key = KEYS[1]
+local window = tonumber(ARGV[1])
+local limit = tonumber(ARGV[2])
+
+-- Redis time keeps every instance on the same clock
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+redis.call('ZREMRANGEBYSCORE', key, '-inf', now - window)
+local count = redis.call('ZCARD', key)
+if count < limit then
+    redis.call('ZADD', key, now, ARGV[3])
+    redis.call('PEXPIRE', key, window)
+    return { 1, limit - count - 1, 0 }
+end
+
+-- Denied attempts are not recorded, the window frees up as the oldest attempt ages out
+local oldest = redis.call('ZRANGE', key, 0, 0, 'WITHSCORES')
+local retryAfter = window
+if oldest[2] then
+    retryAfter = math.max(1, tonumber(oldest[2]) + window - now)
+end
+return { 0, 0, retryAfter }
@@ -14,6 +14,9 @@ import {
   LoginResponse,
 } from '@/types';
 
+// Largest page GET /api/projects serves
+const PROJECT_PAGE_LIMIT = 200;
+
 class Api {
   private instance: AxiosInstance;
   private BASE_URL = import.meta.env.VITE_API_URL || 'http://localhost:8081';
@@ -235,9 +238,18 @@ class Api {
   }
 
   // Project API
+  // Follows X-Next-Cursor until every page of projects is loaded
   async getAllProjects(): Promise<Project[]> {
-    const response = await this.instance.get('/api/projects');
-    return response.data.data;
+    const projects: Project[] = [];
+    let cursor: string | undefined;
+    do {
+      const response = await this.instance.get('/api/projects', {
+        params: { limit: PROJECT_PAGE_LIMIT, cursor }
+      });
+      projects.push(...response.data.data);
+      cursor = response.headers['x-next-cursor'];
+    } while (cursor);
+    return projects;
   }
 
   async getDeveloperProjects(userId: string): Promise<Project[]> {
@@ -245,16 +257,18 @@ class Api {
     return response.data.data;
   }
 
-  async searchProjects(technologies?: string[], status?: string): Promise<Project[]> {
+  async searchProjects(query?: string, technologies?: string[], page = 0, size = 20): Promise<Project[]> {
     const params = new URLSearchParams();
+    if (query) {
+      params.append('q', query);
+    }
     if (technologies) {
       technologies.forEach(tech => params.append('technologies', tech));
     }
-    if (status) {
-      params.append('status', status);
-    }
+    params.append('page', String(page));
+    params.append('size', String(size));
     const response = await this.instance.get(`/api/projects/search?${params.toString()}`);
-    return response.data.data;
+    return response.data.data.items;
   }
 
   async createProject(projectData: ProjectCreateData): Promise<Project> {
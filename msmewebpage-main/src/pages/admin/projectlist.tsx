@@ -2,13 +2,22 @@ import { useQuery } from '@tanstack/react-query';
 import { Card } from '@/components/ui/card';
 import DashboardLayout from '@/components/layout/DashboardLayout';
 
+// Follows X-Next-Cursor until every page of projects is loaded
 const fetchProjects = async () => {
   const token = localStorage.getItem('token');
   const headers = token ? { Authorization: `Bearer ${token}` } : {};
-  const res = await fetch('/api/projects', { credentials: 'include', headers });
-  if (!res.ok) throw new Error('Failed to fetch projects');
-  const apiResponse = await res.json();
-  return apiResponse.data || [];
+  const projects: any[] = [];
+  let cursor: string | null = null;
+  do {
+    const params = new URLSearchParams({ limit: '200' });
+    if (cursor) params.append('cursor', cursor);
+    const res = await fetch(`/api/projects?${params.toString()}`, { credentials: 'include', headers });
+    if (!res.ok) throw new Error('Failed to fetch projects');
+    const apiResponse = await res.json();
+    projects.push(...(apiResponse.data || []));
+    cursor = res.headers.get('X-Next-Cursor');
+  } while (cursor);
+  return projects;
 };
 
 const ProjectList = () => {
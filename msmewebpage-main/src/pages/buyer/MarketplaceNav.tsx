@@ -25,6 +25,8 @@ const MarketplaceNav = () => {
   const [tool, setTool] = useState("");
   const [year, setYear] = useState("");
   const [page, setPage] = useState(1);
+  // Cursor of each page visited so far, page 1 starts without one
+  const [cursors, setCursors] = useState<(string | null)[]>([null]);
   const pageSize = 20;
   const categories = ["All", "Web", "Mobile", "Data Science", "AI", "DevOps"];
   const tools = ["All", "React", "Angular", "Vue", "Node.js", "Python", "Java"];
@@ -35,18 +37,14 @@ const MarketplaceNav = () => {
 
   useEffect(() => {
     setIsLoading(true); // Start loading before API call
-    // Fetch all projects
-    axios.get(`/api/projects?page=${page}&size=${pageSize}`)
+    // Fetch one page of projects, the X-Next-Cursor header points at the next one
+    axios.get('/api/projects', { params: { limit: pageSize, cursor: cursors[page - 1] ?? undefined } })
       .then(res => {
         // If using ApiResponse wrapper, extract .data.data
         const data = res.data?.data;
-        if (Array.isArray(data)) {
-          setProjects(data);
-        } else if (data && data.content) {
-          setProjects(data.content);
-        } else {
-          setProjects([]);
-        }
+        setProjects(Array.isArray(data) ? data : []);
+        const next: string | undefined = res.headers['x-next-cursor'];
+        setCursors(prev => [...prev.slice(0, page), next ?? null]);
         setIsLoading(false); // Stop loading after data is fetched
       })
       .catch(() => {
@@ -213,8 +211,9 @@ const MarketplaceNav = () => {
                   </button>
                   <span className="px-4 py-2">{page}</span>
                   <button
-                    className="px-4 py-2 bg-gray-200 rounded"
+                    className="px-4 py-2 bg-gray-200 rounded disabled:opacity-50"
                     onClick={() => setPage(p => p + 1)}
+                    disabled={!cursors[page]}
                   >
                     Next
                   </button>
@@ -7,23 +7,12 @@ import {
 import { Button } from "@/components/ui/button";
 import { Breadcrumb } from "@/components/ui/breadcrumb";
 import ReactMarkdown from "react-markdown";
-// @ts-ignore
-import JSZip from "jszip";
-
-// Helper for base64 encoding Unicode (handles non-Latin1 chars)
-function base64EncodeUnicode(str: string) {
-  return btoa(unescape(encodeURIComponent(str)));
-}
-
-// Helper for base64 decoding Unicode
-function base64DecodeUnicode(str: string) {
-  return decodeURIComponent(escape(atob(str)));
-}
 
+// Project summaries carry file metadata only, content is fetched from storage on demand
 interface ProjectFile {
+  fileId?: string;
   filename: string;
   contentType: string;
-  data: string;
   size: number;
 }
 
@@ -38,6 +27,86 @@ interface Project {
 }
 
 const API_BASE_URL = 'http://localhost:8081/api';
+// Upload sessions accept chunks between 64KB and 16MB
+const UPLOAD_CHUNK_SIZE = 1024 * 1024;
+
+function authHeaders(): Record<string, string> {
+  return { 'Authorization': `Bearer ${localStorage.getItem('token')}` };
+}
+
+function fileDownloadUrl(projectId: string, filename: string) {
+  return `${API_BASE_URL}/projects/public/${projectId}/files/${encodeURIComponent(filename)}/download`;
+}
+
+async function fetchBlob(url: string): Promise<Blob> {
+  const response = await fetch(url, { headers: authHeaders() });
+  if (!response.ok) throw new Error('Failed to download file');
+  return response.blob();
+}
+
+async function fetchFileText(projectId: string, filename: string): Promise<string> {
+  return (await fetchBlob(fileDownloadUrl(projectId, filename))).text();
+}
+
+function saveBlob(blob: Blob, filename: string) {
+  const url = URL.createObjectURL(blob);
+  const a = document.createElement('a');
+  a.href = url;
+  a.download = filename;
+  document.body.appendChild(a);
+  a.click();
+  document.body.removeChild(a);
+  URL.revokeObjectURL(url);
+}
+
+async function sha256Hex(data: ArrayBuffer): Promise<string> {
+  const digest = await crypto.subtle.digest('SHA-256', data);
+  return Array.from(new Uint8Array(digest)).map(b => b.toString(16).padStart(2, '0')).join('');
+}
+
+async function readError(response: Response, fallback: string): Promise<Error> {
+  const errorData = await response.json().catch(() => ({}));
+  return new Error(errorData.message || fallback);
+}
+
+// Uploads a file through an upload session, replacing any project file with the same name
+async function uploadProjectFile(projectId: string, filename: string, contentType: string, content: Blob): Promise<Project> {
+  const jsonHeaders = { ...authHeaders(), 'Content-Type': 'application/json' };
+  const created = await fetch(`${API_BASE_URL}/projects/${projectId}/uploads`, {
+    method: 'POST',
+    headers: jsonHeaders,
+    body: JSON.stringify({
+      filename,
+      contentType,
+      totalSize: content.size,
+      chunkSize: UPLOAD_CHUNK_SIZE,
+      sha256: await sha256Hex(await content.arrayBuffer()),
+    })
+  });
+  if (!created.ok) throw await readError(created, 'Failed to start upload');
+  const session = (await created.json()).data;
+
+  for (let index = 0; index < session.chunkCount; index++) {
+    const chunk = await content.slice(index * UPLOAD_CHUNK_SIZE, (index + 1) * UPLOAD_CHUNK_SIZE).arrayBuffer();
+    const uploaded = await fetch(`${API_BASE_URL}/projects/uploads/${session.id}/chunks/${index}`, {
+      method: 'PUT',
+      headers: {
+        ...authHeaders(),
+        'Content-Type': 'application/octet-stream',
+        'X-Chunk-SHA256': await sha256Hex(chunk)
+      },
+      body: chunk
+    });
+    if (!uploaded.ok) throw await readError(uploaded, 'Failed to upload file');
+  }
+
+  const committed = await fetch(`${API_BASE_URL}/projects/uploads/${session.id}/commit`, {
+    method: 'POST',
+    headers: authHeaders()
+  });
+  if (!committed.ok) throw await readError(committed, 'Failed to upload file');
+  return (await committed.json()).data;
+}
 
 const ProjectDetails = () => {
   const { id } = useParams<{ id: string }>();
@@ -55,6 +124,7 @@ const ProjectDetails = () => {
   const [markdownEditContent, setMarkdownEditContent] = useState<string>("");
   const [markdownError, setMarkdownError] = useState<string | null>(null);
   const [markdownTouched, setMarkdownTouched] = useState(false);
+  const [markdownContent, setMarkdownContent] = useState<string | null>(null);
   const [addFileModalOpen, setAddFileModalOpen] = useState(false);
   const [newFile, setNewFile] = useState<File | null>(null);
   const [newFileError, setNewFileError] = useState<string | null>(null);
@@ -93,31 +163,42 @@ const ProjectDetails = () => {
   }, [id, navigate]);
 
   useEffect(() => {
-    if (selectedFile && selectedFile.contentType.startsWith("text/")) {
-      try {
-        setFileContent(base64DecodeUnicode(selectedFile.data));
+    setFileContent("");
+    setIsEditing(false);
+    if (!project || !selectedFile || !selectedFile.contentType.startsWith("text/")) return;
+    let cancelled = false;
+    fetchFileText(project.id, selectedFile.filename)
+      .then(text => {
+        if (cancelled) return;
+        setFileContent(text);
         setIsEditing(true);
-      } catch {
-        setFileContent("");
-        setIsEditing(false);
-      }
-    } else {
-      setFileContent("");
-      setIsEditing(false);
-    }
-  }, [selectedFile]);
+      })
+      .catch(() => {
+        // Leave the editor closed when the content cannot be loaded
+      });
+    return () => { cancelled = true; };
+  }, [project?.id, selectedFile]);
 
   // Find the first .md file in the project
   const markdownFile = project?.files.find(
     (file) => file.filename.toLowerCase().endsWith(".md")
   );
-  // Use the raw markdown content (decoded) for display, not rendered as HTML
-  const markdownContent = markdownFile ? base64DecodeUnicode(markdownFile.data) : null;
+
+  // Use the raw markdown content for display, not rendered as HTML
+  useEffect(() => {
+    setMarkdownContent(null);
+    if (!project || !markdownFile) return;
+    let cancelled = false;
+    fetchFileText(project.id, markdownFile.filename)
+      .then(text => { if (!cancelled) setMarkdownContent(text); })
+      .catch(() => { if (!cancelled) setMarkdownContent(null); });
+    return () => { cancelled = true; };
+  }, [project?.id, markdownFile?.filename, markdownFile?.fileId]);
 
   // Start editing the markdown file
   const handleEditMarkdown = () => {
     if (markdownFile) {
-      setMarkdownEditContent(base64DecodeUnicode(markdownFile.data));
+      setMarkdownEditContent(markdownContent ?? "");
       setEditingMarkdown(true);
       setMarkdownError(null);
       setMarkdownTouched(false);
@@ -147,36 +228,15 @@ const ProjectDetails = () => {
     setSaveStatus("saving");
     setMarkdownError(null);
     try {
-      const token = localStorage.getItem('token');
-      const updatedFiles = project.files.map(f =>
-        f.filename === markdownFile.filename
-          ? { ...f, data: base64EncodeUnicode(markdownEditContent) }
-          : f
+      const updatedProject = await uploadProjectFile(
+        project.id,
+        markdownFile.filename,
+        markdownFile.contentType,
+        new Blob([markdownEditContent], { type: markdownFile.contentType })
       );
-      const updatedProject = {
-        ...project,
-        files: updatedFiles,
-        userId: (project as any).userId ?? "",
-        status: (project as any).status ?? "PUBLISHED",
-        addReadme: (project as any).addReadme ?? false,
-        gitignoreTemplate: (project as any).gitignoreTemplate ?? "none",
-        license: (project as any).license ?? "none",
-        technologies: (project as any).technologies ?? null,
-      };
-      const response = await fetch(`${API_BASE_URL}/projects/${project.id}`, {
-        method: "PUT",
-        headers: {
-          'Authorization': `Bearer ${token}`,
-          'Content-Type': 'application/json'
-        },
-        body: JSON.stringify(updatedProject)
-      });
-      if (!response.ok) {
-        const errorData = await response.json().catch(() => ({}));
-        throw new Error(errorData.message || "Failed to save file");
-      }
       setSaveStatus("saved");
       setProject(updatedProject);
+      setMarkdownContent(markdownEditContent);
       setEditingMarkdown(false);
       setTimeout(() => setSaveStatus("idle"), 1500);
     } catch (err: any) {
@@ -186,20 +246,10 @@ const ProjectDetails = () => {
   };
 
   const handleFileDownload = async (file: ProjectFile) => {
+    if (!project) return;
     try {
       setIsDownloading(file.filename);
-      const binary = atob(file.data);
-      const bytes = new Uint8Array(binary.length);
-      for (let i = 0; i < binary.length; i++) bytes[i] = binary.charCodeAt(i);
-      const blob = new Blob([bytes], { type: file.contentType });
-      const url = URL.createObjectURL(blob);
-      const a = document.createElement('a');
-      a.href = url;
-      a.download = file.filename;
-      document.body.appendChild(a);
-      a.click();
-      document.body.removeChild(a);
-      URL.revokeObjectURL(url);
+      saveBlob(await fetchBlob(fileDownloadUrl(project.id, file.filename)), file.filename);
     } catch (err) {
       // Optionally show a toast here
     } finally {
@@ -207,31 +257,13 @@ const ProjectDetails = () => {
     }
   };
 
-  // Bulk download all files as zip
+  // Bulk download all files as zip, built by the server
   const handleDownloadAll = async () => {
     if (!project || !project.files.length) return;
     setIsBulkDownloading(true);
     try {
-      const zip = new JSZip();
-      project.files.forEach(file => {
-        try {
-          const binary = atob(file.data);
-          const bytes = new Uint8Array(binary.length);
-          for (let i = 0; i < binary.length; i++) bytes[i] = binary.charCodeAt(i);
-          zip.file(file.filename, bytes);
-        } catch {
-          // skip file if error
-        }
-      });
-      const blob = await zip.generateAsync({ type: "blob" });
-      const url = URL.createObjectURL(blob);
-      const a = document.createElement('a');
-      a.href = url;
-      a.download = `${project.name.replace(/\s+/g, "_")}_files.zip`;
-      document.body.appendChild(a);
-      a.click();
-      document.body.removeChild(a);
-      URL.revokeObjectURL(url);
+      const blob = await fetchBlob(`${API_BASE_URL}/projects/public/${project.id}/archive`);
+      saveBlob(blob, `${project.name.replace(/\s+/g, "_")}_files.zip`);
     } catch (err) {
       // Optionally show a toast here
     } finally {
@@ -243,22 +275,12 @@ const ProjectDetails = () => {
     if (!project || !selectedFile) return;
     setSaveStatus("saving");
     try {
-      const token = localStorage.getItem('token');
-      const updatedFiles = project.files.map(f =>
-        f.filename === selectedFile.filename
-          ? { ...f, data: base64EncodeUnicode(fileContent) }
-          : f
+      const updatedProject = await uploadProjectFile(
+        project.id,
+        selectedFile.filename,
+        selectedFile.contentType,
+        new Blob([fileContent], { type: selectedFile.contentType })
       );
-      const updatedProject = { ...project, files: updatedFiles };
-      const response = await fetch(`${API_BASE_URL}/projects/${project.id}`, {
-        method: "PUT",
-        headers: {
-          'Authorization': `Bearer ${token}`,
-          'Content-Type': 'application/json'
-        },
-        body: JSON.stringify(updatedProject)
-      });
-      if (!response.ok) throw new Error("Failed to save file");
       setSaveStatus("saved");
       setProject(updatedProject);
       setTimeout(() => setSaveStatus("idle"), 1500);
@@ -267,7 +289,7 @@ const ProjectDetails = () => {
     }
   };
 
-  // Add new file to project
+  // Add new file to project, replacing a file with the same name
   const handleAddFile = async () => {
     if (!project || !newFile) {
       setNewFileError("Please select a file.");
@@ -275,66 +297,13 @@ const ProjectDetails = () => {
     }
     setNewFileError(null);
     try {
-      const reader = new FileReader();
-      reader.onload = async (e) => {
-        try {
-          const base64 = (e.target?.result as string).split(",")[1];
-          const contentType = newFile.type || "application/octet-stream";
-          const projectFile: ProjectFile = {
-            filename: newFile.name,
-            contentType,
-            data: base64,
-            size: newFile.size,
-          };
-          // Prevent duplicate filenames
-          const filteredFiles = project.files.filter(f => f.filename !== newFile.name);
-          const updatedFiles = [...filteredFiles, projectFile];
-
-          // Only include fields that are defined in the backend Project model
-          const updatedProject: any = {
-            id: project.id,
-            name: project.name,
-            description: project.description,
-            organization: project.organization,
-            visibility: project.visibility,
-            createdAt: project.createdAt,
-            files: updatedFiles,
-          };
-
-          // If your backend expects these fields, add them if present:
-          if ((project as any).userId) updatedProject.userId = (project as any).userId;
-          if ((project as any).status) updatedProject.status = (project as any).status;
-          if ((project as any).addReadme !== undefined) updatedProject.addReadme = (project as any).addReadme;
-          if ((project as any).gitignoreTemplate) updatedProject.gitignoreTemplate = (project as any).gitignoreTemplate;
-          if ((project as any).license) updatedProject.license = (project as any).license;
-          if ((project as any).technologies) updatedProject.technologies = (project as any).technologies;
-          if ((project as any).email) updatedProject.email = (project as any).email;
-          if ((project as any).isActive !== undefined) updatedProject.isActive = (project as any).isActive;
-
-          const token = localStorage.getItem('token');
-          const response = await fetch(`${API_BASE_URL}/projects/${project.id}`, {
-            method: "PUT",
-            headers: {
-              'Authorization': `Bearer ${token}`,
-              'Content-Type': 'application/json'
-            },
-            body: JSON.stringify(updatedProject)
-          });
-          if (!response.ok) {
-            const errorData = await response.json().catch(() => ({}));
-            throw new Error(errorData.message || "Failed to add file");
-          }
-          setProject(updatedProject);
-          setAddFileModalOpen(false);
-          setNewFile(null);
-        } catch (err: any) {
-          setNewFileError(err?.message || "Failed to add file");
-        }
-      };
-      reader.onerror = () => setNewFileError("Failed to read file.");
-      reader.readAsDataURL(newFile);
+      const contentType = newFile.type || "application/octet-stream";
+      const updatedProject = await uploadProjectFile(project.id, newFile.name, contentType, newFile);
+      setProject(updatedProject);
+      setAddFileModalOpen(false);
+      setNewFile(null);
     } catch (err: any) {
-      setNewFileError("Failed to read file.");
+      setNewFileError(err?.message || "Failed to add file");
     }
   };
 
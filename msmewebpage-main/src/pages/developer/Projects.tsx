@@ -46,6 +46,28 @@ interface UserActivity {
   timestamp: string;
 }
 
+interface ActivityStreaks {
+  currentStreak: number;
+  longestStreak: number;
+  lastActiveDay: string | null;
+  totalActivities: number;
+  actionTotals: Record<string, number>;
+  // Activities per ISO day, days without activity omitted
+  heatmap: Record<string, number>;
+}
+
+const HEATMAP_DAYS = 30;
+
+// Local ISO dates of the last HEATMAP_DAYS days, oldest first
+const recentDays = () => Array.from({ length: HEATMAP_DAYS }, (_, i) => {
+  const day = new Date();
+  day.setDate(day.getDate() - (HEATMAP_DAYS - 1 - i));
+  return `${day.getFullYear()}-${String(day.getMonth() + 1).padStart(2, "0")}-${String(day.getDate()).padStart(2, "0")}`;
+});
+
+const heatmapShade = (count: number) =>
+  count === 0 ? "bg-gray-100" : count < 3 ? "bg-blue-200" : count < 6 ? "bg-blue-400" : "bg-blue-600";
+
 const Projects = () => {
   const { user } = useAuth();
   const navigate = useNavigate();
@@ -54,7 +76,7 @@ const Projects = () => {
   const [projects, setProjects] = useState<Project[]>([]);
   const [activities, setActivities] = useState<UserActivity[]>([]);
   const [activityFilter, setActivityFilter] = useState<string>("all");
-  const [streakDays, setStreakDays] = useState<number>(0);
+  const [streaks, setStreaks] = useState<ActivityStreaks | null>(null);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
   const [retryCount, setRetryCount] = useState(0);
@@ -156,15 +178,11 @@ const Projects = () => {
         if (!response.ok) return;
         const data = await response.json();
         if (data && data.data) {
-          // Calculate unique days with activity
-          const days = new Set(
-            (data.data as UserActivity[]).map(a =>
-              new Date(a.timestamp).toLocaleDateString()
-            )
-          );
-          setStreakDays(days.size);
+          setStreaks(data.data as ActivityStreaks);
         }
-      } catch {}
+      } catch (err) {
+        console.error("Failed to load activity streaks", err);
+      }
     };
     fetchStreaks();
   }, [user?.id, activities]);
@@ -419,7 +437,10 @@ const Projects = () => {
             <h2 className="text-3xl md:text-4xl font-extrabold tracking-tight text-blue-900 drop-shadow flex items-center gap-3">
               Recent Activity
               <span className="text-sm bg-blue-100 text-blue-700 px-3 py-1 rounded-full ml-2 font-semibold">
-                Days Active: {streakDays}
+                Current Streak: {streaks?.currentStreak ?? 0}
+              </span>
+              <span className="text-sm bg-purple-100 text-purple-700 px-3 py-1 rounded-full font-semibold">
+                Longest Streak: {streaks?.longestStreak ?? 0}
               </span>
             </h2>
             <select
@@ -428,12 +449,27 @@ const Projects = () => {
               onChange={e => setActivityFilter(e.target.value)}
             >
               <option value="all" style={boldOptionStyle}>All</option>
-              <option value="CREATED_PROJECT">Created Project</option>
-              <option value="EDITED_PROJECT">Edited Project</option>
-              <option value="UPLOADED_FILE">Uploaded File</option>
-              <option value="COMMENTED">Commented</option>
+              <option value="CREATED_PROJECT">Created Project ({streaks?.actionTotals?.CREATED_PROJECT ?? 0})</option>
+              <option value="EDITED_PROJECT">Edited Project ({streaks?.actionTotals?.EDITED_PROJECT ?? 0})</option>
+              <option value="UPLOADED_FILE">Uploaded File ({streaks?.actionTotals?.UPLOADED_FILE ?? 0})</option>
+              <option value="COMMENTED">Commented ({streaks?.actionTotals?.COMMENTED ?? 0})</option>
             </select>
           </div>
+          <div className="flex items-center gap-1" aria-label={`Activity over the last ${HEATMAP_DAYS} days`}>
+            {recentDays().map(day => {
+              const count = streaks?.heatmap?.[day] ?? 0;
+              return (
+                <div
+                  key={day}
+                  title={`${day}: ${count} ${count === 1 ? "activity" : "activities"}`}
+                  className={`w-4 h-4 rounded-sm ${heatmapShade(count)}`}
+                />
+              );
+            })}
+            <span className="ml-3 text-sm text-gray-500 font-medium">
+              {streaks?.totalActivities ?? 0} activities in total
+            </span>
+          </div>
           <div className="rounded-3xl shadow-2xl border border-blue-200 bg-gradient-to-br from-white/95 via-blue-50/90 to-purple-50/90 p-10 min-h-[140px] flex flex-col justify-center">
             {filteredActivities.length === 0 ? (
               <div className="text-gray-400 text-center font-extrabold text-xl tracking-wide">No recent activity</div>